@@ -0,0 +1,79 @@
+package com.merzadyan.analyser;
+
+import com.merzadyan.benchmark.Corpus;
+import org.ahocorasick.trie.Trie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the Stanford CoreNLP backed stages of {@link SentientAnalyser} against the articles of the corpus.
+ * Every invocation analyses the next article in the corpus so that all threads cycle through articles of varying
+ * length. Throughput is reported in articles per second and SampleTime mode reports the latency percentiles.
+ * <p>
+ * The pipelines are loaded during warm-up; the annotators take several seconds to load, hence the long iterations.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 20)
+@Measurement(iterations = 5, time = 20)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Dlog4j.configuration=log4j-benchmark.properties"})
+public class SentientAnalyserBenchmark {
+    
+    @State(Scope.Benchmark)
+    public static class Articles {
+        List<String> texts;
+        Trie trie;
+        
+        @Setup
+        public void setUp() throws IOException {
+            texts = Corpus.texts();
+            trie = Corpus.trie();
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next;
+        
+        String next(Articles articles) {
+            String text = articles.texts.get(next);
+            next = (next + 1) % articles.texts.size();
+            return text;
+        }
+    }
+    
+    @Benchmark
+    public int findSentiment(Articles articles, Cursor cursor) throws Exception {
+        return SentientAnalyser.findSentiment(cursor.next(articles));
+    }
+    
+    @Benchmark
+    public String identifyOrganisationEntity(Articles articles, Cursor cursor) throws Exception {
+        return SentientAnalyser.identifyOrganisationEntity(cursor.next(articles), articles.trie);
+    }
+    
+    @Benchmark
+    public String findSUTime(Articles articles, Cursor cursor) {
+        return SentientAnalyser.findSUTime(cursor.next(articles));
+    }
+    
+    /**
+     * The single pass which the crawler runs per article; stops early at the first stage which rejects the article.
+     */
+    @Benchmark
+    public Analysis analyse(Articles articles, Cursor cursor) throws Exception {
+        return SentientAnalyser.analyse(cursor.next(articles), articles.trie);
+    }
+}
@@ -0,0 +1,39 @@
+package com.merzadyan.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once single-threaded and once with a thread per core, with the GC profiler attached so that
+ * the allocation rate is reported alongside the throughput and latency percentiles.
+ * <p>
+ * Run from the project root (the FTSE-100 dictionary is read from src/main/resources):
+ * <pre>
+ * mvn -P benchmark package exec:exec
+ * </pre>
+ * Arguments are passed on to JMH, e.g. a regular expression selecting the benchmarks to run:
+ * <pre>
+ * mvn -P benchmark package exec:exec -Dbenchmark.args=CrawlerBenchmark
+ * </pre>
+ * The results are written to target/jmh-result-N-threads.json.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws Exception {
+        Options commandLineOptions = new CommandLineOptions(args);
+        int[] threadCounts = {1, Runtime.getRuntime().availableProcessors()};
+        for (int threads : threadCounts) {
+            Options options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("target/jmh-result-" + threads + "-threads.json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+}
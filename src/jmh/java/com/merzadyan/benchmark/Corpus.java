@@ -0,0 +1,130 @@
+package com.merzadyan.benchmark;
+
+import com.merzadyan.stock.SOIRegistry;
+import com.merzadyan.stock.Stock;
+import com.merzadyan.stock.StockMatcher;
+import org.ahocorasick.trie.Trie;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Bundled corpus of saved finance articles which the benchmarks run against.
+ * The pages are listed in corpus/index.txt by their path; index.html is a link-heavy seed page and the articles
+ * under markets/ mention FTSE-100 companies and link to one another with host-relative links.
+ * The directory can be served as is by the {@link com.merzadyan.crawler.ReplayServer}.
+ */
+public class Corpus {
+    public static final String DIRECTORY = "corpus/";
+    public static final String INDEX = DIRECTORY + "index.txt";
+    /**
+     * Host the pages are pretended to be served from; relative links resolve against it.
+     */
+    public static final String BASE_URL = "http://corpus.local";
+    
+    private Corpus() {
+    
+    }
+    
+    /**
+     * @return paths of the pages in the corpus in the order they are listed in corpus/index.txt.
+     */
+    public static List<String> names() throws IOException {
+        List<String> names = new ArrayList<>();
+        try (BufferedReader reader = open(INDEX)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    names.add(line);
+                }
+            }
+        }
+        return names;
+    }
+    
+    public static String html(String name) throws IOException {
+        StringBuilder html = new StringBuilder();
+        try (BufferedReader reader = open(DIRECTORY + name)) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                html.append(buffer, 0, read);
+            }
+        }
+        return html.toString();
+    }
+    
+    /**
+     * @return URL the page is pretended to be served from.
+     */
+    public static String url(String name) {
+        return BASE_URL + "/" + name;
+    }
+    
+    /**
+     * @return body text of every page in the corpus, extracted the same way as the crawler does.
+     */
+    public static List<String> texts() throws IOException {
+        List<String> texts = new ArrayList<>();
+        for (String name : names()) {
+            texts.add(Jsoup.parseBodyFragment(html(name)).body().text());
+        }
+        return texts;
+    }
+    
+    /**
+     * @return absolute URLs of the links on the page.
+     */
+    public static Set<String> links(String name, String html) {
+        Set<String> links = new LinkedHashSet<>();
+        Document document = Jsoup.parse(html, url(name));
+        for (Element anchor : document.select("a[href]")) {
+            String link = anchor.absUrl("href");
+            if (!link.isEmpty()) {
+                links.add(link);
+            }
+        }
+        return links;
+    }
+    
+    /**
+     * @return FTSE-100 stocks; the benchmarks use them in place of the user-defined stocks of interest.
+     */
+    public static TreeSet<Stock> stocks() {
+        return SOIRegistry.getInstance().getFtse100Set();
+    }
+    
+    /**
+     * @return matcher of the FTSE-100 stocks.
+     */
+    public static StockMatcher stockMatcher() {
+        return StockMatcher.build(stocks(), 0);
+    }
+    
+    /**
+     * @return trie of the company names of the FTSE-100 stocks, as used by the crawler.
+     */
+    public static Trie trie() {
+        return stockMatcher().getTrie();
+    }
+    
+    private static BufferedReader open(String resource) throws IOException {
+        InputStream in = Corpus.class.getClassLoader().getResourceAsStream(resource);
+        if (in == null) {
+            throw new IOException("Corpus resource not found: " + resource);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+    }
+}
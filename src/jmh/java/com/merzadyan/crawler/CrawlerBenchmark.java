@@ -0,0 +1,154 @@
+package com.merzadyan.crawler;
+
+import com.merzadyan.benchmark.Corpus;
+import com.merzadyan.stock.Stock;
+import com.merzadyan.stock.StockMatcher;
+import edu.uci.ics.crawler4j.crawler.Page;
+import edu.uci.ics.crawler4j.parser.HtmlParseData;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the per-link and per-crawler work of {@link Crawler} which does not involve fetching or analysing
+ * pages: filtering the outgoing links of a page in {@link Crawler#shouldVisit} and tallying the sentiment scores into
+ * histograms in {@link Crawler#onBeforeExit}.
+ * <p>
+ * Crawlers are not shared between threads, as is the case when crawling, so the state is per thread.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog4j.configuration=log4j-benchmark.properties"})
+public class CrawlerBenchmark {
+    private static final LocalDate START_DATE = LocalDate.of(2018, 3, 1);
+    private static final LocalDate END_DATE = LocalDate.of(2018, 3, 31);
+    
+    @State(Scope.Thread)
+    public static class Pages {
+        Crawler crawler;
+        List<Page> pages = new ArrayList<>();
+        private int next;
+        
+        @Setup
+        public void setUp() throws IOException {
+            crawler = new Crawler(null, configs());
+            int docid = 0;
+            for (String name : Corpus.names()) {
+                String html = Corpus.html(name);
+                Set<WebURL> outgoingUrls = new HashSet<>();
+                for (String link : Corpus.links(name, html)) {
+                    WebURL outgoingUrl = new WebURL();
+                    outgoingUrl.setURL(link);
+                    outgoingUrls.add(outgoingUrl);
+                }
+                
+                HtmlParseData htmlParseData = new HtmlParseData();
+                htmlParseData.setHtml(html);
+                htmlParseData.setOutgoingUrls(outgoingUrls);
+                
+                WebURL webURL = new WebURL();
+                webURL.setURL(Corpus.url(name));
+                webURL.setDocid(++docid);
+                Page page = new Page(webURL);
+                page.setParseData(htmlParseData);
+                pages.add(page);
+            }
+        }
+        
+        Page next() {
+            Page page = pages.get(next);
+            next = (next + 1) % pages.size();
+            return page;
+        }
+    }
+    
+    @State(Scope.Thread)
+    public static class Scores {
+        /**
+         * Number of stocks which scores are recorded against.
+         */
+        @Param({"10", "100"})
+        int stocks;
+        /**
+         * Number of scores recorded per stock.
+         */
+        @Param({"10", "1000"})
+        int scoresPerStock;
+        
+        Crawler crawler;
+        Stock[] stocksById;
+        Random random;
+        
+        @Setup
+        public void setUp() {
+            crawler = new Crawler(null, configs());
+            stocksById = new Stock[stocks];
+            random = new Random(0);
+            for (int i = 0; i < stocks; i++) {
+                stocksById[i] = new Stock("Company " + i, "C" + i, "LSE");
+                for (int j = 0; j < scoresPerStock; j++) {
+                    crawler.record(i, stocksById[i], 0, 0, random.nextInt(5));
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return configs of a crawler which looks for the FTSE-100 stocks rather than the stocks of interest.
+     */
+    private static Configs configs() {
+        Configs configs = new Configs(START_DATE, END_DATE, Integer.MAX_VALUE);
+        StockMatcher stockMatcher = Corpus.stockMatcher();
+        configs.setStockMatcherSource(() -> stockMatcher);
+        return configs;
+    }
+    
+    /**
+     * Filters every outgoing link of the next page in the corpus, as crawler4j does once a page has been visited.
+     */
+    @Benchmark
+    public void shouldVisitOutgoingUrls(Pages pages, Blackhole blackhole) {
+        Page page = pages.next();
+        for (WebURL url : page.getParseData().getOutgoingUrls()) {
+            blackhole.consume(pages.crawler.shouldVisit(page, url));
+        }
+    }
+    
+    /**
+     * Tallies the recorded scores into a histogram per stock; nothing is published as there is no listener.
+     */
+    @Benchmark
+    public void onBeforeExit(Scores scores) {
+        scores.crawler.onBeforeExit();
+    }
+    
+    /**
+     * Records a score against a random stock, as an analyser does for every accepted article.
+     */
+    @Benchmark
+    public void record(Scores scores) {
+        int stockId = scores.random.nextInt(scores.stocks);
+        scores.crawler.record(stockId, scores.stocksById[stockId], 0, 0, scores.random.nextInt(5));
+    }
+}
@@ -0,0 +1,69 @@
+package com.merzadyan.crawler;
+
+import com.merzadyan.benchmark.Corpus;
+import org.ahocorasick.trie.Emit;
+import org.ahocorasick.trie.Trie;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares extracting the body text of the corpus pages, and finding the companies they mention, with Jsoup against
+ * the streaming {@link HtmlTextExtractor}. Run with the GC profiler (as {@link com.merzadyan.benchmark.BenchmarkRunner}
+ * does) to compare the allocation per page.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Dlog4j.configuration=log4j-benchmark.properties"})
+public class TextExtractionBenchmark {
+    
+    @State(Scope.Thread)
+    public static class Pages {
+        List<String> pages = new ArrayList<>();
+        Trie trie;
+        HtmlTextExtractor textExtractor = new HtmlTextExtractor();
+        private int next;
+        
+        @Setup
+        public void setUp() throws IOException {
+            for (String name : Corpus.names()) {
+                pages.add(Corpus.html(name));
+            }
+            trie = Corpus.trie();
+        }
+        
+        String next() {
+            String html = pages.get(next);
+            next = (next + 1) % pages.size();
+            return html;
+        }
+    }
+    
+    @Benchmark
+    public Collection<Emit> jsoup(Pages pages) {
+        String text = Jsoup.parseBodyFragment(pages.next()).body().text();
+        return pages.trie.parseText(text);
+    }
+    
+    @Benchmark
+    public Collection<Emit> streaming(Pages pages) {
+        String text = pages.textExtractor.extract(pages.next());
+        return pages.trie.parseText(text);
+    }
+}
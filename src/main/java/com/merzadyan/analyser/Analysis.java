@@ -0,0 +1,73 @@
+package com.merzadyan.analyser;
+
+/**
+ * Holds the result of a single pass of {@link SentientAnalyser#analyse} over an article: the date, the
+ * organisation entity and the sentiment score.
+ * <p>
+ * Stages that were not reached (e.g. the date was not found so the organisation was never looked up) keep their
+ * default values: null for the date and organisation and -1 for the sentiment.
+ */
+public class Analysis {
+    private String date;
+    private String organisation;
+    private int sentiment = -1;
+    private SentientAnalyser.Stage rejectedAt;
+    
+    Analysis() {
+    
+    }
+    
+    /**
+     * The result of an earlier analysis, e.g. as cached by the {@link AnalysisCache}.
+     */
+    public Analysis(String date, String organisation, int sentiment, SentientAnalyser.Stage rejectedAt) {
+        this.date = date;
+        this.organisation = organisation;
+        this.sentiment = sentiment;
+        this.rejectedAt = rejectedAt;
+    }
+    
+    /**
+     * @return date in the format yyyy-mm-dd. Null if no date was found.
+     */
+    public String getDate() {
+        return date;
+    }
+    
+    void setDate(String date) {
+        this.date = date;
+    }
+    
+    /**
+     * @return organisation entity which is listed in the trie. Null if none was found.
+     */
+    public String getOrganisation() {
+        return organisation;
+    }
+    
+    void setOrganisation(String organisation) {
+        this.organisation = organisation;
+    }
+    
+    /**
+     * @return fine-grain sentiment score in a range of 0-4; -1 if the sentiment was not calculated.
+     */
+    public int getSentiment() {
+        return sentiment;
+    }
+    
+    void setSentiment(int sentiment) {
+        this.sentiment = sentiment;
+    }
+    
+    /**
+     * @return stage which rejected the text. Null if the text passed every stage.
+     */
+    public SentientAnalyser.Stage getRejectedAt() {
+        return rejectedAt;
+    }
+    
+    void setRejectedAt(SentientAnalyser.Stage rejectedAt) {
+        this.rejectedAt = rejectedAt;
+    }
+}
@@ -0,0 +1,351 @@
+package com.merzadyan.analyser;
+
+import org.apache.log4j.Logger;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Disk-backed cache of the results of {@link SentientAnalyser#analyse}, keyed by a hash of the normalised text of the
+ * article, so that articles which are crawled again, e.g. as the seeds keep linking to them for days, are not
+ * analysed again by this or later crawls.
+ * <p>
+ * The cache is a fixed size, memory-mapped file of fixed size records, thus is bounded and needs no loading. A key
+ * maps to a set of {@link #WAYS} records; when the set is full, the least recently used record of the set is
+ * replaced. Records older than the time to live are expired, as the analysers or their models may have changed.
+ * <p>
+ * Thread-safe; each set is locked while it is read or written.
+ */
+public class AnalysisCache implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(AnalysisCache.class.getName());
+    
+    public static final int DEFAULT_CAPACITY = 32768;
+    public static final long DEFAULT_TIME_TO_LIVE = TimeUnit.DAYS.toMillis(30);
+    
+    private static final int MAGIC = 0x41434331;
+    /**
+     * IMPORTANT: raised whenever the analyser would find a different result for the same text, so that analyses made
+     * by earlier versions are dropped: version 2 picks the organisation entity by the stock matcher, version 3 scopes
+     * the sentiment to the mentions of its stock.
+     */
+    private static final int FORMAT_VERSION = 3;
+    private static final int HEADER_SIZE = 64;
+    static final int WAYS = 8;
+    private static final int LOCKS = 64;
+    
+    // Layout of a record.
+    private static final int KEY = 0;
+    private static final int CREATED = 8;
+    private static final int ACCESSED = 16;
+    private static final int SENTIMENT = 24;
+    private static final int REJECTED_AT = 25;
+    private static final int DATE_LENGTH = 26;
+    private static final int ORGANISATION_LENGTH = 27;
+    private static final int DATE = 28;
+    private static final int DATE_SIZE = 32;
+    private static final int ORGANISATION = DATE + DATE_SIZE;
+    private static final int ORGANISATION_SIZE = 132;
+    private static final int RECORD_SIZE = ORGANISATION + ORGANISATION_SIZE;
+    
+    /**
+     * Most articles the cache holds: the file is mapped as a single buffer, whose positions are ints, thus it must
+     * not exceed 2GB.
+     */
+    public static final int MAX_CAPACITY = Integer.highestOneBit((Integer.MAX_VALUE - HEADER_SIZE) / RECORD_SIZE);
+    
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int sets;
+    private final long timeToLive;
+    private final Object[] locks = new Object[LOCKS];
+    
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    
+    /**
+     * Opens the cache in the file, creating the file if it does not exist; a file of a different format or capacity
+     * is started afresh.
+     *
+     * @param capacity   number of articles the cache holds, up to {@link #MAX_CAPACITY}; rounded up to a power of
+     *                   two. The file takes about 200 bytes per article.
+     * @param timeToLive milliseconds an analysis is reused for; 0 for unlimited.
+     * @throws IllegalArgumentException if the capacity is not positive or exceeds {@link #MAX_CAPACITY}.
+     */
+    public AnalysisCache(Path file, int capacity, long timeToLive) throws IOException {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity " + capacity + " not in range 1-" + MAX_CAPACITY);
+        }
+        int sets = 1;
+        while (sets * WAYS < capacity) {
+            sets <<= 1;
+        }
+        this.sets = sets;
+        this.timeToLive = timeToLive;
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+        
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        long size = HEADER_SIZE + (long) sets * WAYS * RECORD_SIZE;
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        boolean compatible = channel.size() == size;
+        if (channel.size() > size) {
+            channel.truncate(size);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        compatible = compatible && buffer.getInt(0) == MAGIC && buffer.getInt(4) == FORMAT_VERSION &&
+                buffer.getInt(8) == sets && buffer.getInt(12) == WAYS && buffer.getInt(16) == RECORD_SIZE;
+        if (!compatible) {
+            LOGGER.debug("#AnalysisCache: starting afresh: " + file);
+            for (long position = 0; position < size; position++) {
+                buffer.put((int) position, (byte) 0);
+            }
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            buffer.putInt(8, sets);
+            buffer.putInt(12, WAYS);
+            buffer.putInt(16, RECORD_SIZE);
+        }
+    }
+    
+    /**
+     * Hashes the text with its whitespace collapsed and ignoring case, thus the same article extracted from pages
+     * laid out differently has the same key. The text is scanned in place.
+     *
+     * @param stockSignature signature of the stocks of interest, which the analysis depends on.
+     * @return key of the analysis of the text; never 0.
+     */
+    public static long keyOf(String text, long stockSignature) {
+        // FNV-1a over the normalised text.
+        long hash = 0xcbf29ce484222325L;
+        boolean whitespace = false;
+        boolean empty = true;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                whitespace = true;
+                continue;
+            }
+            if (whitespace && !empty) {
+                hash ^= ' ';
+                hash *= 0x100000001b3L;
+            }
+            whitespace = false;
+            empty = false;
+            hash ^= Character.toLowerCase(c);
+            hash *= 0x100000001b3L;
+        }
+        hash = mix(hash ^ signatureOf(stockSignature));
+        return hash == 0 ? 1 : hash;
+    }
+    
+    /**
+     * @return signature of whatever the analysis of a text depends on: the stocks of interest and the settings of the
+     * analyser, which change the organisation and sentiment found.
+     */
+    public static long signatureOf(long stockSignature) {
+        return mix(stockSignature ^ (SentientAnalyser.isEntityScopedSentiment() ? 1 : 0) ^
+                ((long) SentientAnalyser.getSentimentWindow() << 1) ^
+                ((long) SentientAnalyser.getDateScanSentences() << 32));
+    }
+    
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+    
+    /**
+     * @return the analysis of the text of the key, as if the text was analysed for the dates; null if the text has to
+     * be analysed, i.e. it is not in the cache or it was rejected for a date which is now in-between the dates.
+     */
+    public Analysis get(long key, LocalDate startDate, LocalDate endDate) {
+        Analysis analysis = lookup(key, startDate, endDate);
+        if (analysis == null) {
+            missCount.increment();
+        } else {
+            hitCount.increment();
+        }
+        return analysis;
+    }
+    
+    /**
+     * Unlike {@link #get}, does not count as a hit or a miss.
+     *
+     * @return true if the analysis of the text of the key would be found for the dates.
+     */
+    public boolean contains(long key, LocalDate startDate, LocalDate endDate) {
+        return lookup(key, startDate, endDate) != null;
+    }
+    
+    private Analysis lookup(long key, LocalDate startDate, LocalDate endDate) {
+        int set = setOf(key);
+        long now = System.currentTimeMillis();
+        Analysis analysis = null;
+        synchronized (locks[set % LOCKS]) {
+            int record = find(set, key, now);
+            if (record >= 0) {
+                analysis = read(record);
+                buffer.putLong(record + ACCESSED, now);
+            }
+        }
+        if (analysis != null && analysis.getDate() != null) {
+            // The analysis stops at the date if it is not in-between, thus only holds for the same outcome.
+            boolean wasInBetween = analysis.getRejectedAt() != SentientAnalyser.Stage.DATE;
+            if (!SentientAnalyser.isInBetween(analysis.getDate(), startDate, endDate)) {
+                Analysis rejected = new Analysis();
+                rejected.setDate(analysis.getDate());
+                rejected.setRejectedAt(SentientAnalyser.Stage.DATE);
+                analysis = rejected;
+            } else if (!wasInBetween) {
+                analysis = null;
+            }
+        }
+        return analysis;
+    }
+    
+    /**
+     * Caches the analysis of the text of the key, replacing the least recently used analysis of its set if full.
+     */
+    public void put(long key, Analysis analysis) {
+        byte[] date = analysis.getDate() == null ? new byte[0] : analysis.getDate().getBytes(StandardCharsets.UTF_8);
+        byte[] organisation = analysis.getOrganisation() == null ? new byte[0] :
+                analysis.getOrganisation().getBytes(StandardCharsets.UTF_8);
+        if (date.length > DATE_SIZE || organisation.length > ORGANISATION_SIZE) {
+            // NOTE: too long to be a date or the name of an organisation; not worth caching.
+            return;
+        }
+        
+        int set = setOf(key);
+        long now = System.currentTimeMillis();
+        synchronized (locks[set % LOCKS]) {
+            int record = find(set, key, now);
+            if (record < 0) {
+                record = victimOf(set, now);
+            }
+            buffer.putLong(record + KEY, key);
+            buffer.putLong(record + CREATED, now);
+            buffer.putLong(record + ACCESSED, now);
+            buffer.put(record + SENTIMENT, (byte) analysis.getSentiment());
+            buffer.put(record + REJECTED_AT,
+                    (byte) (analysis.getRejectedAt() == null ? 0 : analysis.getRejectedAt().ordinal() + 1));
+            buffer.put(record + DATE_LENGTH, (byte) date.length);
+            buffer.put(record + ORGANISATION_LENGTH, (byte) organisation.length);
+            put(record + DATE, date);
+            put(record + ORGANISATION, organisation);
+        }
+    }
+    
+    private int setOf(long key) {
+        return (int) (key ^ (key >>> 32)) & (sets - 1);
+    }
+    
+    /**
+     * NOTE: the capacity is at most {@link #MAX_CAPACITY}, thus the position does not overflow.
+     */
+    private static int recordOf(int set, int way) {
+        return HEADER_SIZE + (set * WAYS + way) * RECORD_SIZE;
+    }
+    
+    /**
+     * @return position of the unexpired record of the key in the set; -1 if there is none.
+     */
+    private int find(int set, long key, long now) {
+        for (int way = 0; way < WAYS; way++) {
+            int record = recordOf(set, way);
+            if (buffer.getLong(record + KEY) == key) {
+                return isExpired(record, now) ? -1 : record;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * @return position of an empty or expired record of the set, or else of its least recently used record.
+     */
+    private int victimOf(int set, long now) {
+        int victim = -1;
+        long leastRecentlyAccessed = Long.MAX_VALUE;
+        for (int way = 0; way < WAYS; way++) {
+            int record = recordOf(set, way);
+            if (buffer.getLong(record + KEY) == 0 || isExpired(record, now)) {
+                return record;
+            }
+            long accessed = buffer.getLong(record + ACCESSED);
+            if (accessed < leastRecentlyAccessed) {
+                leastRecentlyAccessed = accessed;
+                victim = record;
+            }
+        }
+        return victim;
+    }
+    
+    private boolean isExpired(int record, long now) {
+        return timeToLive > 0 && now - buffer.getLong(record + CREATED) > timeToLive;
+    }
+    
+    private Analysis read(int record) {
+        int rejectedAt = buffer.get(record + REJECTED_AT);
+        return new Analysis(get(record + DATE, buffer.get(record + DATE_LENGTH) & 0xff),
+                get(record + ORGANISATION, buffer.get(record + ORGANISATION_LENGTH) & 0xff),
+                buffer.get(record + SENTIMENT),
+                rejectedAt == 0 ? null : SentientAnalyser.Stage.values()[rejectedAt - 1]);
+    }
+    
+    private String get(int position, int length) {
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        // NOTE: a duplicate of the buffer is read from, as the position of the shared buffer must not change.
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    private void put(int position, byte[] bytes) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position);
+        duplicate.put(bytes);
+    }
+    
+    public long getHitCount() {
+        return hitCount.sum();
+    }
+    
+    public long getMissCount() {
+        return missCount.sum();
+    }
+    
+    /**
+     * Writes the cache through to the file.
+     */
+    public void flush() {
+        buffer.force();
+    }
+    
+    @Override
+    public void close() throws IOException {
+        flush();
+        channel.close();
+    }
+    
+    @Override
+    public String toString() {
+        return "hits: " + getHitCount() + " misses: " + getMissCount() + " capacity: " + sets * WAYS;
+    }
+}
@@ -0,0 +1,137 @@
+package com.merzadyan.analyser;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of {@link Pipelines} which are checked out by a thread for the duration of one analysis and then returned.
+ * Sets of pipelines are created lazily, the first time a thread finds no idle set whilst the pool is below its size,
+ * so models are only loaded for as many threads as actually analyse concurrently.
+ * <p>
+ * Contention is measured as the number of checkouts which had to wait for another thread to return a set of
+ * pipelines, together with the total time spent waiting.
+ */
+public class PipelinePool {
+    private static final Logger LOGGER = Logger.getLogger(PipelinePool.class.getName());
+    
+    private final LinkedBlockingDeque<Pipelines> idle = new LinkedBlockingDeque<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private volatile int size;
+    
+    private final LongAdder checkouts = new LongAdder();
+    private final LongAdder contendedCheckouts = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    
+    PipelinePool(int size) {
+        setSize(size);
+    }
+    
+    /**
+     * @throws InterruptedException if interrupted whilst waiting for another thread to return a set of pipelines.
+     */
+    Pipelines checkout() throws InterruptedException {
+        checkouts.increment();
+        
+        Pipelines pipelines = idle.pollFirst();
+        if (pipelines != null) {
+            return pipelines;
+        }
+        
+        // Warm up another set of pipelines if the pool has not reached its size yet.
+        int count;
+        while ((count = created.get()) < size) {
+            if (created.compareAndSet(count, count + 1)) {
+                LOGGER.debug("#checkout: creating set of pipelines: " + (count + 1) + " of " + size);
+                try {
+                    return new Pipelines();
+                } catch (RuntimeException e) {
+                    created.decrementAndGet();
+                    throw e;
+                }
+            }
+        }
+        
+        contendedCheckouts.increment();
+        long start = System.nanoTime();
+        try {
+            return idle.takeFirst();
+        } finally {
+            waitNanos.add(System.nanoTime() - start);
+        }
+    }
+    
+    void release(Pipelines pipelines) {
+        // Discard the set if the pool has been shrunk since it was created.
+        int count;
+        while ((count = created.get()) > size) {
+            if (created.compareAndSet(count, count - 1)) {
+                return;
+            }
+        }
+        
+        // Most recently used first, as its models are more likely to still be in the CPU caches.
+        idle.offerFirst(pipelines);
+    }
+    
+    public int getSize() {
+        return size;
+    }
+    
+    /**
+     * Shrinking the pool discards the surplus idle sets of pipelines, least recently used first, so that their models
+     * can be garbage collected; surplus sets which are checked out are discarded as they are returned.
+     *
+     * @param size maximum number of sets of pipelines; the number of threads which can analyse concurrently.
+     */
+    public void setSize(int size) {
+        if (size <= 0) {
+            return;
+        }
+        this.size = size;
+        
+        while (created.get() > size) {
+            Pipelines pipelines = idle.pollLast();
+            if (pipelines == null) {
+                // The rest of the surplus is checked out.
+                break;
+            }
+            created.decrementAndGet();
+            LOGGER.debug("#setSize: discarded idle set of pipelines; " + created.get() + " of " + size + " left.");
+        }
+    }
+    
+    /**
+     * @return number of sets of pipelines which have been created (warmed up) so far.
+     */
+    public int getCreatedCount() {
+        return created.get();
+    }
+    
+    public long getCheckoutCount() {
+        return checkouts.sum();
+    }
+    
+    /**
+     * @return number of checkouts which had to wait for another thread to return a set of pipelines.
+     */
+    public long getContendedCheckoutCount() {
+        return contendedCheckouts.sum();
+    }
+    
+    /**
+     * @return total time spent by threads waiting for a set of pipelines.
+     */
+    public long getWaitTime(TimeUnit unit) {
+        return unit.convert(waitNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+    
+    public void resetMetrics() {
+        checkouts.reset();
+        contendedCheckouts.reset();
+        waitNanos.reset();
+    }
+}
@@ -0,0 +1,72 @@
+package com.merzadyan.analyser;
+
+import edu.stanford.nlp.pipeline.AnnotatorImplementations;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.time.TimeAnnotator;
+import edu.stanford.nlp.util.logging.RedwoodConfiguration;
+
+import java.util.Properties;
+
+/**
+ * A complete set of the pipelines used by {@link SentientAnalyser}. A set is only ever used by one thread at a time
+ * (see {@link PipelinePool}) and each set owns its annotators rather than sharing them through the global CoreNLP
+ * annotator pool, so that threads do not contend on annotators which synchronise internally or share state.
+ */
+class Pipelines {
+    /**
+     * Tokenises and splits the text into sentences. The stages below are applied to the document it produces
+     * so that the tokens, sentences and POS tags are shared rather than recomputed by each stage.
+     */
+    final StanfordCoreNLP sharedPipeline;
+    
+    final StanfordCoreNLP posStage;
+    
+    final StanfordCoreNLP namedEntityStage;
+    
+    final StanfordCoreNLP sentimentStage;
+    
+    final TimeAnnotator suTimeStage;
+    
+    Pipelines() {
+        sharedPipeline = getSharedPipeline();
+        posStage = getStagePipeline("pos");
+        namedEntityStage = getStagePipeline("lemma, ner");
+        // Parse annotator is required for sentiment.
+        sentimentStage = getStagePipeline("parse, sentiment");
+        suTimeStage = new TimeAnnotator("sutime", new Properties());
+    }
+    
+    private static StanfordCoreNLP getSharedPipeline() {
+        Properties properties = new Properties();
+        // Remove tokenizer warnings.
+        // NOTE: 6 options for tokenize.options: noneDelete, firstDelete, allDelete, noneKeep, firstKeep, allKeep
+        properties.setProperty("tokenize.options", "untokenizable=noneKeep");
+        properties.setProperty("annotators", "tokenize, ssplit");
+        return getPipeline(properties, true);
+    }
+    
+    /**
+     * @param annotators run on top of a document (or a subset of its sentences) that has already been annotated by
+     *                   the shared pipeline.
+     */
+    private static StanfordCoreNLP getStagePipeline(String annotators) {
+        Properties properties = new Properties();
+        properties.setProperty("annotators", annotators);
+        // The tokenize, ssplit and pos requirements are satisfied by the shared pipeline and the pos stage instead.
+        return getPipeline(properties, false);
+    }
+    
+    private static StanfordCoreNLP getPipeline(Properties properties, boolean enforceRequirements) {
+        // Disable logs.
+        RedwoodConfiguration.empty().capture(System.out).apply();
+        
+        // A private annotator pool gives this set its own annotator instances.
+        StanfordCoreNLP pipeline = new StanfordCoreNLP(properties, enforceRequirements,
+                StanfordCoreNLP.constructAnnotatorPool(properties, new AnnotatorImplementations()));
+        
+        // Re-enable logs.
+        RedwoodConfiguration.current().clear().apply();
+        
+        return pipeline;
+    }
+}
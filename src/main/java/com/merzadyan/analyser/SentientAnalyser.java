@@ -1,99 +1,407 @@
 package com.merzadyan.analyser;
 
+import com.merzadyan.stock.StockMatcher;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
 import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.AnnotationPipeline;
-import edu.stanford.nlp.pipeline.POSTaggerAnnotator;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
-import edu.stanford.nlp.pipeline.TokenizerAnnotator;
-import edu.stanford.nlp.pipeline.WordsToSentencesAnnotator;
 import edu.stanford.nlp.sentiment.SentimentCoreAnnotations;
 import edu.stanford.nlp.time.SUTime;
 import edu.stanford.nlp.time.TimeAnnotations;
-import edu.stanford.nlp.time.TimeAnnotator;
 import edu.stanford.nlp.time.TimeExpression;
 import edu.stanford.nlp.trees.Tree;
 import edu.stanford.nlp.util.CoreMap;
-import edu.stanford.nlp.util.logging.RedwoodConfiguration;
+import org.ahocorasick.trie.Emit;
 import org.apache.log4j.Logger;
 
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
 
 public class SentientAnalyser {
+    private static final Logger LOGGER = Logger.getLogger(SentientAnalyser.class.getName());
     
-    private static final StanfordCoreNLP sentimentPipeline = getSentimentPipeline();
+    public static final int DEFAULT_PIPELINE_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    /**
+     * Each analysing thread checks out its own set of pipelines rather than all threads sharing one set.
+     */
+    private static final PipelinePool pipelinePool = new PipelinePool(DEFAULT_PIPELINE_POOL_SIZE);
+    
+    /**
+     * Stages of #analyse in the order in which they are run, cheapest first. A stage that fails rejects the text
+     * and the stages after it are skipped.
+     */
+    public enum Stage {
+        /**
+         * Aho-Corasick trie match against the raw text; runs before the text is tokenised.
+         */
+        MATCH,
+        /**
+         * SUTime date scan over the first sentences of the text, followed by the date interval check.
+         */
+        DATE,
+        /**
+         * NER over the sentences which contain a trie match.
+         */
+        ORGANISATION,
+        /**
+         * Parse and sentiment.
+         */
+        SENTIMENT
+    }
+    
+    /**
+     * Number of texts rejected by each stage of #analyse since the last #resetRejectCounts.
+     */
+    private static final EnumMap<Stage, AtomicLong> rejectCounts = getRejectCounts();
+    private static final AtomicLong acceptCount = new AtomicLong();
+    
+    public static final int DEFAULT_DATE_SCAN_SENTENCES = 20;
+    /**
+     * Number of sentences from the start of the text which are scanned for a date. Articles state their date near
+     * the top and only the first date found is used, so the rest of the text is not POS-tagged for SUTime.
+     */
+    private static volatile int dateScanSentences = DEFAULT_DATE_SCAN_SENTENCES;
     
-    private static final StanfordCoreNLP namedEntityPipeline = getNamedEntityPipeline();
+    public static final boolean DEFAULT_ENTITY_SCOPED_SENTIMENT = true;
+    public static final int DEFAULT_SENTIMENT_WINDOW = 1;
+    /**
+     * If true then #analyse only parses the sentences which mention the identified organisation, together with
+     * sentimentWindow neighbouring sentences on either side, rather than every sentence of the text.
+     */
+    private static volatile boolean entityScopedSentiment = DEFAULT_ENTITY_SCOPED_SENTIMENT;
+    private static volatile int sentimentWindow = DEFAULT_SENTIMENT_WINDOW;
     
-    private static final AnnotationPipeline suTimePipeline = getSuTimePipeline();
     private static final Pattern dateFormatRegex = getDateFormatRegex();
     /**
      * Used as an exception case for matching yyyy-mm-ddThh:mm formats.
      */
     private static final Pattern dateTimeFormatRegex = getDateTimeFormatRegex();
     
-    private static StanfordCoreNLP getSentimentPipeline() {
-        // Disable logs.
-        RedwoodConfiguration.empty().capture(System.out).apply();
-        
-        Properties properties = new Properties();
-        // Remove tokenizer warnings.
-        // NOTE: 6 options for tokenize.options: noneDelete, firstDelete, allDelete, noneKeep, firstKeep, allKeep
-        properties.setProperty("tokenize.options", "untokenizable=noneKeep");
-        // Parse annotator is required for sentiment?
-        properties.setProperty("annotators", "tokenize, ssplit, pos, parse, sentiment");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(properties);
+    private static EnumMap<Stage, AtomicLong> getRejectCounts() {
+        EnumMap<Stage, AtomicLong> counts = new EnumMap<>(Stage.class);
+        for (Stage stage : Stage.values()) {
+            counts.put(stage, new AtomicLong());
+        }
+        return counts;
+    }
+    
+    /**
+     * Matches yyyy-mm-dd format.
+     */
+    private static Pattern getDateFormatRegex() {
+        return Pattern.compile("^2018-(0[1-9]|1[0-2])-(0[0-9]|1[0-9]|2[0-9]|3[0-1])?$");
+    }
+    
+    /**
+     * Matches yyyy-mm-ddThh:mm format.
+     */
+    private static Pattern getDateTimeFormatRegex() {
+        return Pattern.compile("^2018-(0[1-9]|1[0-2])-(0[0-9]|1[0-9]|2[0-9]|3[0-1])(T(0[1-9]|1[1-9]|2[1-3]):(0[1-9]|1[1-9]|2[1-9]|3[1-9]|4[1-9]|5[1-9]))?$");
+    }
+    
+    /**
+     * Finds the date, organisation entity and sentiment of the text in a single annotation pass.
+     *
+     * @see #analyse(String, org.ahocorasick.trie.Trie, LocalDate, LocalDate)
+     */
+    public static Analysis analyse(String text, org.ahocorasick.trie.Trie trie) throws Exception {
+        return analyse(text, trie, null, null);
+    }
+    
+    /**
+     * Finds the trie matches in the text before analysing it.
+     *
+     * @see #analyse(String, Collection, org.ahocorasick.trie.Trie, LocalDate, LocalDate)
+     */
+    public static Analysis analyse(String text, org.ahocorasick.trie.Trie trie,
+                                   LocalDate startDate, LocalDate endDate) throws Exception {
+        if (text == null || text.isEmpty()) {
+            return reject(new Analysis(), Stage.MATCH);
+        }
         
-        // Re-enable logs.
-        RedwoodConfiguration.current().clear().apply();
+        return analyse(text, trie.parseText(text), trie, startDate, endDate);
+    }
+    
+    /**
+     * Finds the date, organisation entity and sentiment of the text in a single annotation pass. The text is
+     * tokenised and split into sentences once and each {@link Stage} annotates only the sentences it needs from
+     * that same document; sentences are POS-tagged at most once.
+     * <p>
+     * Stages are run cheapest first and the analysis stops at the first stage that fails, leaving the rest of
+     * the result at its defaults. The failed stage is recorded in {@link Analysis#getRejectedAt()} and counted in
+     * {@link #getRejectCount(Stage)}.
+     *
+     * @param emits     trie matches in the text, e.g. as already found by the crawler; used to pick the sentences
+     *                  for the NER and (entity-scoped) sentiment stages.
+     * @param startDate inclusive; no lower bound if null.
+     * @param endDate   inclusive; no upper bound if null.
+     * @throws Exception unknown/unexpected emitted from Stanford CoreNLP.
+     */
+    public static Analysis analyse(String text, Collection<Emit> emits, org.ahocorasick.trie.Trie trie,
+                                   LocalDate startDate, LocalDate endDate) throws Exception {
+        return analyse(text, emits, trie, null, startDate, endDate);
+    }
+    
+    /**
+     * Analyses the text against the stocks of interest of the matcher: the organisation entity is the first one
+     * which refers to a stock, as per the case of its ticker symbol and aliases, e.g. "Vod" is passed over for a
+     * later "Vodafone".
+     *
+     * @param emits matches of the stock matcher in the text.
+     * @see #analyse(String, Collection, org.ahocorasick.trie.Trie, LocalDate, LocalDate)
+     */
+    public static Analysis analyse(String text, Collection<Emit> emits, StockMatcher stockMatcher,
+                                   LocalDate startDate, LocalDate endDate) throws Exception {
+        return analyse(text, emits, stockMatcher.getTrie(), stockMatcher, startDate, endDate);
+    }
+    
+    /**
+     * @param stockMatcher null to take the first organisation entity which matches the trie.
+     */
+    private static Analysis analyse(String text, Collection<Emit> emits, org.ahocorasick.trie.Trie trie,
+                                    StockMatcher stockMatcher, LocalDate startDate, LocalDate endDate)
+            throws Exception {
+        Analysis analysis = new Analysis();
+        if (text == null || text.isEmpty() || emits == null || emits.isEmpty()) {
+            LOGGER.debug("#analyse: no reference to a company listed in the trie.");
+            return reject(analysis, Stage.MATCH);
+        }
         
-        return pipeline;
+        Pipelines pipelines = pipelinePool.checkout();
+        try {
+            return analyse(pipelines, analysis, text, emits, trie, stockMatcher, startDate, endDate);
+        } finally {
+            pipelinePool.release(pipelines);
+        }
     }
     
-    private static StanfordCoreNLP getNamedEntityPipeline() {
-        // Disable logs.
-        RedwoodConfiguration.empty().capture(System.out).apply();
+    private static Analysis analyse(Pipelines pipelines, Analysis analysis, String text, Collection<Emit> emits,
+                                    org.ahocorasick.trie.Trie trie, StockMatcher stockMatcher,
+                                    LocalDate startDate, LocalDate endDate) {
+        Annotation document = pipelines.sharedPipeline.process(text);
+        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+        
+        Annotation head = subDocument(text, sentences.subList(0, Math.min(dateScanSentences, sentences.size())));
+        tag(pipelines, head);
+        pipelines.suTimeStage.annotate(head);
+        analysis.setDate(extractDate(head.get(TimeAnnotations.TimexAnnotations.class)));
+        if (analysis.getDate() == null) {
+            LOGGER.debug("#analyse: no date found.");
+            return reject(analysis, Stage.DATE);
+        }
+        
+        if (!isInBetween(analysis.getDate(), startDate, endDate)) {
+            LOGGER.debug("#analyse: date: " + analysis.getDate() + " not in-between startDate: " + startDate +
+                    " endDate: " + endDate);
+            return reject(analysis, Stage.DATE);
+        }
         
-        Properties properties = new Properties();
-        // Remove tokenizer warnings.
-        // NOTE: 6 options for tokenize.options: noneDelete, firstDelete, allDelete, noneKeep, firstKeep, allKeep
-        properties.setProperty("tokenize.options", "untokenizable=noneKeep");
-        properties.setProperty("annotators", "tokenize, ssplit, pos, lemma, ner");
-        StanfordCoreNLP pipeline = new StanfordCoreNLP(properties);
+        Annotation mentions = subDocument(text, selectSentences(sentences, emits, 0));
+        tag(pipelines, mentions);
+        pipelines.namedEntityStage.annotate(mentions);
+        analysis.setOrganisation(extractOrganisationEntity(mentions.get(CoreAnnotations.SentencesAnnotation.class),
+                trie, stockMatcher));
+        if (analysis.getOrganisation() == null) {
+            LOGGER.debug("#analyse: failed to identify an organisational entity.");
+            return reject(analysis, Stage.ORGANISATION);
+        }
         
-        // Re-enable logs.
-        RedwoodConfiguration.current().clear().apply();
+        List<CoreMap> scope = sentences;
+        if (entityScopedSentiment) {
+            Collection<Emit> organisationMentions = stockMatcher != null ?
+                    mentionsOf(analysis.getOrganisation(), emits, stockMatcher) :
+                    mentionsOf(analysis.getOrganisation(), emits, trie);
+            scope = selectSentences(sentences, organisationMentions, sentimentWindow);
+        }
+        Annotation scoped = subDocument(text, scope);
+        tag(pipelines, scoped);
+        pipelines.sentimentStage.annotate(scoped);
+        analysis.setSentiment(extractSentiment(scope));
+        if (analysis.getSentiment() == -1) {
+            return reject(analysis, Stage.SENTIMENT);
+        }
         
-        return pipeline;
+        acceptCount.incrementAndGet();
+        return analysis;
     }
     
-    private static AnnotationPipeline getSuTimePipeline() {
-        Properties properties = new Properties();
-        AnnotationPipeline pipeline = new AnnotationPipeline();
-        pipeline.addAnnotator(new TokenizerAnnotator(false));
-        pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
-        pipeline.addAnnotator(new POSTaggerAnnotator(false));
-        pipeline.addAnnotator(new TimeAnnotator("sutime", properties));
-        return pipeline;
+    private static Analysis reject(Analysis analysis, Stage stage) {
+        analysis.setRejectedAt(stage);
+        rejectCounts.get(stage).incrementAndGet();
+        return analysis;
     }
     
     /**
-     * Matches yyyy-mm-dd format.
+     * NOTE: an annotation built from sentences takes their texts joined as its text, which the character offsets of
+     * the tokens do not index into once sentences are left out; thus the text of the document is kept instead.
+     *
+     * @return annotation of the sentences of the document, in its text.
      */
-    private static Pattern getDateFormatRegex() {
-        return Pattern.compile("^2018-(0[1-9]|1[0-2])-(0[0-9]|1[0-9]|2[0-9]|3[0-1])?$");
+    private static Annotation subDocument(String text, List<CoreMap> sentences) {
+        Annotation annotation = new Annotation(sentences);
+        annotation.set(CoreAnnotations.TextAnnotation.class, text);
+        return annotation;
     }
     
     /**
-     * Matches yyyy-mm-ddThh:mm format.
+     * POS-tags the sentences of the document which have not already been tagged by an earlier stage.
      */
-    private static Pattern getDateTimeFormatRegex() {
-        return Pattern.compile("^2018-(0[1-9]|1[0-2])-(0[0-9]|1[0-9]|2[0-9]|3[0-1])(T(0[1-9]|1[1-9]|2[1-3]):(0[1-9]|1[1-9]|2[1-9]|3[1-9]|4[1-9]|5[1-9]))?$");
+    private static void tag(Pipelines pipelines, Annotation document) {
+        List<CoreMap> untagged = new ArrayList<>();
+        for (CoreMap sentence : document.get(CoreAnnotations.SentencesAnnotation.class)) {
+            List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
+            if (!tokens.isEmpty() && tokens.get(0).tag() == null) {
+                untagged.add(sentence);
+            }
+        }
+        
+        if (!untagged.isEmpty()) {
+            pipelines.posStage.annotate(new Annotation(untagged));
+        }
+    }
+    
+    /**
+     * @param emits  trie matches; their offsets are relative to the text that the sentences were split from.
+     * @param window number of neighbouring sentences on either side of a matching sentence to select as well.
+     * @return sentences which contain at least one of the trie matches (or are within the window of one), in
+     * document order.
+     */
+    private static List<CoreMap> selectSentences(List<CoreMap> sentences, Collection<Emit> emits, int window) {
+        boolean[] isSelected = new boolean[sentences.size()];
+        for (int i = 0; i < sentences.size(); i++) {
+            CoreMap sentence = sentences.get(i);
+            int begin = sentence.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class),
+                    end = sentence.get(CoreAnnotations.CharacterOffsetEndAnnotation.class);
+            for (Emit emit : emits) {
+                // NOTE: the end of an emit is inclusive whereas the end offset of a sentence is exclusive.
+                if (emit.getStart() < end && emit.getEnd() >= begin) {
+                    for (int j = Math.max(0, i - window); j <= Math.min(sentences.size() - 1, i + window); j++) {
+                        isSelected[j] = true;
+                    }
+                    break;
+                }
+            }
+        }
+        
+        List<CoreMap> selected = new ArrayList<>();
+        for (int i = 0; i < isSelected.length; i++) {
+            if (isSelected[i]) {
+                selected.add(sentences.get(i));
+            }
+        }
+        return selected;
+    }
+    
+    /**
+     * Matches refer to the organisation if they name the same stock, by any of the names it goes by, e.g. "RBS" and
+     * "Royal Bank of Scotland"; the mentions of the other stocks in the text are left out.
+     *
+     * @param emits matches of the stock matcher in the text.
+     * @return matches which refer to the stock of the organisation; all of the matches if none of them do.
+     */
+    public static Collection<Emit> mentionsOf(String organisation, Collection<Emit> emits,
+                                              StockMatcher stockMatcher) {
+        int stockId = stockMatcher.stockIdOf(organisation);
+        List<Emit> mentions = new ArrayList<>();
+        if (stockId != -1) {
+            for (Emit emit : emits) {
+                if (stockMatcher.stockIdOf(emit) == stockId) {
+                    mentions.add(emit);
+                }
+            }
+        }
+        return mentions.isEmpty() ? emits : mentions;
+    }
+    
+    /**
+     * Without a stock matcher, the names of a stock cannot be told apart from those of other stocks, thus only
+     * matches of the same keywords as the organisation refer to it.
+     *
+     * @return trie matches which refer to the organisation; all of the matches if none of them do.
+     */
+    private static Collection<Emit> mentionsOf(String organisation, Collection<Emit> emits,
+                                               org.ahocorasick.trie.Trie trie) {
+        Set<String> keywords = new HashSet<>();
+        for (Emit emit : trie.parseText(organisation)) {
+            keywords.add(emit.getKeyword().toLowerCase());
+        }
+        List<Emit> mentions = new ArrayList<>();
+        for (Emit emit : emits) {
+            if (keywords.contains(emit.getKeyword().toLowerCase())) {
+                mentions.add(emit);
+            }
+        }
+        return mentions.isEmpty() ? emits : mentions;
+    }
+    
+    public static long getRejectCount(Stage stage) {
+        return rejectCounts.get(stage).get();
+    }
+    
+    /**
+     * @return number of texts which passed every stage of #analyse since the last #resetRejectCounts.
+     */
+    public static long getAcceptCount() {
+        return acceptCount.get();
+    }
+    
+    public static void resetRejectCounts() {
+        for (AtomicLong count : rejectCounts.values()) {
+            count.set(0);
+        }
+        acceptCount.set(0);
+    }
+    
+    public static PipelinePool getPipelinePool() {
+        return pipelinePool;
+    }
+    
+    public static int getDateScanSentences() {
+        return dateScanSentences;
+    }
+    
+    public static void setDateScanSentences(int dateScanSentences) {
+        if (dateScanSentences > 0) {
+            SentientAnalyser.dateScanSentences = dateScanSentences;
+        }
+    }
+    
+    public static boolean isEntityScopedSentiment() {
+        return entityScopedSentiment;
+    }
+    
+    public static void setEntityScopedSentiment(boolean entityScopedSentiment) {
+        SentientAnalyser.entityScopedSentiment = entityScopedSentiment;
+    }
+    
+    public static int getSentimentWindow() {
+        return sentimentWindow;
+    }
+    
+    public static void setSentimentWindow(int sentimentWindow) {
+        if (sentimentWindow >= 0) {
+            SentientAnalyser.sentimentWindow = sentimentWindow;
+        }
+    }
+    
+    static boolean isInBetween(String extractedDate, LocalDate startDate, LocalDate endDate) {
+        LocalDate date;
+        try {
+            date = LocalDate.parse(extractedDate);
+        } catch (DateTimeParseException e) {
+            LOGGER.error("#isInBetween: failed to parse: " + extractedDate + " into a LocalDate.");
+            return false;
+        }
+        
+        return (startDate == null || !date.isBefore(startDate)) && (endDate == null || !date.isAfter(endDate));
     }
     
     /**
@@ -115,8 +423,22 @@ public class SentientAnalyser {
             return -1;
         }
         
-        Annotation document = sentimentPipeline.process(text);
-        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+        Pipelines pipelines = pipelinePool.checkout();
+        try {
+            Annotation document = pipelines.sharedPipeline.process(text);
+            pipelines.posStage.annotate(document);
+            pipelines.sentimentStage.annotate(document);
+            
+            return extractSentiment(document.get(CoreAnnotations.SentencesAnnotation.class));
+        } finally {
+            pipelinePool.release(pipelines);
+        }
+    }
+    
+    private static int extractSentiment(List<CoreMap> sentences) {
+        if (sentences == null || sentences.isEmpty()) {
+            return -1;
+        }
         
         ArrayList<Integer> documentSentiment = new ArrayList<>();
         
@@ -155,8 +477,24 @@ public class SentientAnalyser {
             return null;
         }
         
-        Annotation document = namedEntityPipeline.process(text);
-        List<CoreMap> sentences = document.get(CoreAnnotations.SentencesAnnotation.class);
+        Pipelines pipelines = pipelinePool.checkout();
+        try {
+            Annotation document = pipelines.sharedPipeline.process(text);
+            pipelines.posStage.annotate(document);
+            pipelines.namedEntityStage.annotate(document);
+            
+            return extractOrganisationEntity(document.get(CoreAnnotations.SentencesAnnotation.class), trie, null);
+        } finally {
+            pipelinePool.release(pipelines);
+        }
+    }
+    
+    /**
+     * @param stockMatcher null to take the first entity which matches the trie.
+     * @return the first organisation entity which refers to a stock of the matcher, or else matches the trie.
+     */
+    private static String extractOrganisationEntity(List<CoreMap> sentences, org.ahocorasick.trie.Trie trie,
+                                                    StockMatcher stockMatcher) {
         List<String> organisations = new ArrayList<>();
         
         for (CoreMap sentence : sentences) {
@@ -186,7 +524,9 @@ public class SentientAnalyser {
         }
         
         for (String entity : organisations) {
-            if (trie.containsMatch(entity)) {
+            // NOTE: the trie ignores case, whereas the matcher only matches ticker symbols and upper case aliases in
+            // upper case; an entity which only matches one of them in the wrong case, e.g. "Vod", is passed over.
+            if (stockMatcher != null ? stockMatcher.stockIdOf(entity) != -1 : trie.containsMatch(entity)) {
                 return entity;
             }
         }
@@ -204,11 +544,28 @@ public class SentientAnalyser {
             return null;
         }
         
+        Pipelines pipelines;
+        try {
+            pipelines = pipelinePool.checkout();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        
+        try {
+            Annotation annotation = pipelines.sharedPipeline.process(text);
+            pipelines.posStage.annotate(annotation);
+            pipelines.suTimeStage.annotate(annotation);
+            
+            return extractDate(annotation.get(TimeAnnotations.TimexAnnotations.class));
+        } finally {
+            pipelinePool.release(pipelines);
+        }
+    }
+    
+    private static String extractDate(List<CoreMap> timexAnnotations) {
         String extractedDate = null;
         
-        Annotation annotation = new Annotation(text);
-        suTimePipeline.annotate(annotation);
-        List<CoreMap> timexAnnotations = annotation.get(TimeAnnotations.TimexAnnotations.class);
         for (CoreMap coreMap : timexAnnotations) {
             SUTime.Temporal temporal = coreMap.get(TimeExpression.Annotation.class).getTemporal();
             
@@ -0,0 +1,406 @@
+package com.merzadyan.crawler;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.util.EntityUtils;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Page fetcher which is polite per host rather than crawl-wide. crawler4j waits the politeness delay between any two
+ * fetches, whatever their hosts, thus the fetches of all the crawlers are serialised; whereas this fetcher only spaces
+ * out the fetches of the same host, so crawlers fetching from different hosts do not wait for each other.
+ * <p>
+ * The delay of each host adapts to how the host responds:
+ * <ul>
+ * <li>it is at least the configured politeness delay and the Crawl-delay of the host's robots.txt,</li>
+ * <li>it grows with the response latency of the host, i.e. slow hosts are fetched from less often, and</li>
+ * <li>it backs off on errors and throttling (429, 503 and Retry-After), and recovers as fetches succeed.</li>
+ * </ul>
+ * The delay a host asks for is always honoured; a host whose delay grows longer than {@link #MAX_DELAY} is skipped
+ * for the rest of the crawl instead. The {@link HostFrontier} claims a host before handing out one of its urls, thus
+ * the crawlers are only handed urls of hosts which are ready to be fetched from.
+ * <p>
+ * NOTE: the politeness delay of the crawl config must be 0, otherwise crawler4j still serialises the fetches.
+ */
+public class AdaptivePageFetcher extends RevalidatingPageFetcher {
+    private static final Logger LOGGER = Logger.getLogger(AdaptivePageFetcher.class.getName());
+    
+    /**
+     * Longest delay of a host worth waiting for; hosts whose Crawl-delay, Retry-After or backoff is longer are skipped.
+     */
+    static final long MAX_DELAY = 30000;
+    /**
+     * Milliseconds after which a claim of a host lapses if its url has not been fetched, e.g. as the crawl shut down.
+     */
+    private static final long CLAIM_TIMEOUT = 60000;
+    /**
+     * The delay of a host is at least this multiple of its response latency.
+     */
+    private static final double LATENCY_FACTOR = 2;
+    /**
+     * Weight of the latest response in the average latency of a host.
+     */
+    private static final double LATENCY_WEIGHT = 0.2;
+    private static final double ERROR_BACKOFF = 1.5;
+    private static final double THROTTLED_BACKOFF = 2;
+    private static final double RECOVERY = 0.9;
+    private static final double MAX_BACKOFF = 64;
+    
+    /**
+     * Politeness of a single host; all times are in milliseconds except for the next fetch time.
+     */
+    static class HostPoliteness {
+        private final long minDelay;
+        private long crawlDelay;
+        // -1 until the first response.
+        private double latency = -1;
+        private double backoff = 1;
+        private long delay;
+        // System.nanoTime() before which the next fetch must not start.
+        private long nextFetchTime = Long.MIN_VALUE;
+        // System.nanoTime() the host was claimed at; Long.MIN_VALUE unless a url of the host is being fetched.
+        private long claimTime = Long.MIN_VALUE;
+        private boolean skipped;
+        
+        private long fetches;
+        private long errors;
+        private long throttled;
+        
+        HostPoliteness(long minDelay) {
+            this.minDelay = minDelay;
+            delay = minDelay;
+        }
+        
+        /**
+         * Claims the host for the fetch of one of its urls, if it is ready: it is not skipped, none of its urls is
+         * being fetched and its delay since the last fetch is over.
+         *
+         * @param now System.nanoTime().
+         * @return true if claimed, until the url has been fetched.
+         */
+        synchronized boolean claim(long now) {
+            if (skipped || (claimTime != Long.MIN_VALUE &&
+                    now - claimTime < TimeUnit.MILLISECONDS.toNanos(CLAIM_TIMEOUT)) ||
+                    (nextFetchTime != Long.MIN_VALUE && now < nextFetchTime)) {
+                return false;
+            }
+            claimTime = now;
+            return true;
+        }
+        
+        synchronized void release() {
+            claimTime = Long.MIN_VALUE;
+        }
+        
+        /**
+         * Reserves the next fetch of the host; fetches are spaced out by the delay of the host as it is at the
+         * time of the reservation.
+         *
+         * @param now System.nanoTime().
+         * @return nanoseconds to wait before fetching.
+         */
+        synchronized long reserve(long now) {
+            long start = nextFetchTime == Long.MIN_VALUE ? now : Math.max(now, nextFetchTime);
+            nextFetchTime = start + TimeUnit.MILLISECONDS.toNanos(delay);
+            return start - now;
+        }
+        
+        /**
+         * @param now        System.nanoTime() once the response was received.
+         * @param latency    milliseconds the fetch took.
+         * @param retryAfter milliseconds the host asked to wait before the next fetch; 0 if it did not.
+         */
+        synchronized void fetched(long now, long latency, int statusCode, long retryAfter) {
+            fetches++;
+            this.latency = this.latency < 0 ? latency :
+                    LATENCY_WEIGHT * latency + (1 - LATENCY_WEIGHT) * this.latency;
+            if (statusCode == 429 || statusCode == 503) {
+                throttled++;
+                backoff = Math.min(backoff * THROTTLED_BACKOFF, MAX_BACKOFF);
+            } else if (statusCode >= 500) {
+                errors++;
+                backoff = Math.min(backoff * ERROR_BACKOFF, MAX_BACKOFF);
+            } else {
+                backoff = Math.max(backoff * RECOVERY, 1);
+            }
+            updateDelay();
+            if (retryAfter > MAX_DELAY) {
+                skipped = true;
+            } else if (retryAfter > 0) {
+                nextFetchTime = Math.max(nextFetchTime, now + TimeUnit.MILLISECONDS.toNanos(retryAfter));
+            }
+        }
+        
+        /**
+         * Called if the fetch failed without a response, e.g. on a timeout or a refused connection.
+         */
+        synchronized void failed() {
+            fetches++;
+            errors++;
+            backoff = Math.min(backoff * ERROR_BACKOFF, MAX_BACKOFF);
+            updateDelay();
+        }
+        
+        synchronized void setCrawlDelay(long crawlDelay) {
+            this.crawlDelay = crawlDelay;
+            updateDelay();
+        }
+        
+        private void updateDelay() {
+            double base = Math.max(Math.max(minDelay, crawlDelay), latency < 0 ? 0 : LATENCY_FACTOR * latency);
+            delay = (long) (base * backoff);
+            if (delay > MAX_DELAY) {
+                skipped = true;
+            }
+        }
+        
+        synchronized long getDelay() {
+            return delay;
+        }
+        
+        synchronized boolean isSkipped() {
+            return skipped;
+        }
+        
+        synchronized long getFetches() {
+            return fetches;
+        }
+        
+        synchronized long getErrors() {
+            return errors;
+        }
+        
+        synchronized long getThrottled() {
+            return throttled;
+        }
+    }
+    
+    private final long minDelay;
+    private final String userAgent;
+    private final ConcurrentHashMap<String, HostPoliteness> hosts = new ConcurrentHashMap<>();
+    
+    /**
+     * @param config   config whose politeness delay is 0.
+     * @param minDelay milliseconds between the fetches of the same host, before adapting to the host.
+     */
+    public AdaptivePageFetcher(CrawlConfig config, long minDelay) {
+        this(config, minDelay, null, entry -> false);
+    }
+    
+    /**
+     * @see RevalidatingPageFetcher#RevalidatingPageFetcher
+     */
+    public AdaptivePageFetcher(CrawlConfig config, long minDelay, RevalidationStore revalidationStore,
+                               Predicate<RevalidationStore.Entry> revalidatable) {
+        super(config, revalidationStore, revalidatable);
+        this.minDelay = Math.max(minDelay, 0);
+        userAgent = config.getUserAgentString() == null ? "" : config.getUserAgentString().toLowerCase();
+    }
+    
+    @Override
+    public PageFetchResult fetchPage(WebURL webUrl)
+            throws InterruptedException, IOException, PageBiggerThanMaxSizeException {
+        HostPoliteness host = hostPolitenessOf(hostOf(webUrl));
+        // NOTE: the wait happens outside of the lock of the host, thus only fetches of the same host wait in turn.
+        // The urls handed out by the host frontier are of hosts which are ready, thus only the robots.txt files and
+        // urls handed out by other frontiers may wait.
+        long wait = host.reserve(System.nanoTime());
+        if (wait > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+        
+        String path = webUrl.getPath();
+        // The robots.txt files are fetched as urls of the host are scheduled, rather than handed out, thus they do
+        // not release the claim of the host.
+        boolean robotsTxt = path != null && path.endsWith("/robots.txt");
+        boolean skipped = host.isSkipped();
+        long start = System.nanoTime();
+        PageFetchResult result;
+        try {
+            result = super.fetchPage(webUrl);
+        } catch (IOException | RuntimeException e) {
+            host.failed();
+            if (!robotsTxt) {
+                host.release();
+            }
+            throw e;
+        }
+        long end = System.nanoTime();
+        host.fetched(end, TimeUnit.NANOSECONDS.toMillis(end - start), result.getStatusCode(),
+                retryAfterOf(result.getResponseHeaders()));
+        if (robotsTxt && result.getStatusCode() == 200) {
+            readCrawlDelay(host, result);
+        }
+        if (!robotsTxt) {
+            host.release();
+        }
+        if (!skipped && host.isSkipped()) {
+            LOGGER.debug("#fetchPage: skipping host: " + hostOf(webUrl) + " delay (ms): " + host.getDelay());
+        }
+        return result;
+    }
+    
+    /**
+     * Reads the Crawl-delay of the robots.txt; the content is buffered so that crawler4j can still read it.
+     */
+    private void readCrawlDelay(HostPoliteness host, PageFetchResult result) throws IOException {
+        HttpEntity entity = result.getEntity();
+        if (entity == null) {
+            return;
+        }
+        HttpEntity bufferedEntity = new BufferedHttpEntity(entity);
+        result.setEntity(bufferedEntity);
+        long crawlDelay = crawlDelayOf(EntityUtils.toString(bufferedEntity, StandardCharsets.UTF_8), userAgent);
+        if (crawlDelay > 0) {
+            LOGGER.debug("#readCrawlDelay: crawl delay (ms): " + crawlDelay);
+            host.setCrawlDelay(crawlDelay);
+        }
+    }
+    
+    /**
+     * Claims the host for the fetch of one of its urls, if it is ready to be fetched from; the claim is released once
+     * the url has been fetched, thus at most one url of a host is handed out at a time.
+     *
+     * @param now System.nanoTime().
+     * @return true if claimed.
+     */
+    public boolean claim(String host, long now) {
+        return hostPolitenessOf(host).claim(now);
+    }
+    
+    /**
+     * @return true if the delay of the host is too long to wait for, thus its urls are not to be fetched.
+     */
+    public boolean isSkipped(String host) {
+        HostPoliteness hostPoliteness = hosts.get(host);
+        return hostPoliteness != null && hostPoliteness.isSkipped();
+    }
+    
+    private HostPoliteness hostPolitenessOf(String host) {
+        return hosts.computeIfAbsent(host, key -> new HostPoliteness(minDelay));
+    }
+    
+    static String hostOf(WebURL webUrl) {
+        String subDomain = webUrl.getSubDomain();
+        String domain = webUrl.getDomain();
+        return subDomain == null || subDomain.isEmpty() ? String.valueOf(domain) : subDomain + "." + domain;
+    }
+    
+    /**
+     * @return milliseconds of the Retry-After header; 0 if there is none or it is an HTTP date.
+     */
+    static long retryAfterOf(Header[] headers) {
+        if (headers == null) {
+            return 0;
+        }
+        for (Header header : headers) {
+            if ("Retry-After".equalsIgnoreCase(header.getName()) && header.getValue() != null) {
+                try {
+                    return Math.max(TimeUnit.SECONDS.toMillis(Long.parseLong(header.getValue().trim())), 0);
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * @param userAgent lower case user agent string of the crawler.
+     * @return milliseconds of the Crawl-delay of the group of the crawler, or else of the group of any crawler
+     * ("*"); 0 if there is none.
+     */
+    public static long crawlDelayOf(String robotsTxt, String userAgent) {
+        long agentDelay = -1, anyDelay = -1;
+        boolean inAgentGroup = false, inAnyGroup = false, readingAgents = false;
+        for (String line : robotsTxt.split("\r\n|\r|\n")) {
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            String field = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (field.equalsIgnoreCase("User-agent")) {
+                // Consecutive user agents share a group.
+                if (!readingAgents) {
+                    inAgentGroup = false;
+                    inAnyGroup = false;
+                    readingAgents = true;
+                }
+                String agent = value.toLowerCase();
+                if (agent.equals("*")) {
+                    inAnyGroup = true;
+                } else if (!agent.isEmpty() && userAgent.contains(agent)) {
+                    inAgentGroup = true;
+                }
+                continue;
+            }
+            readingAgents = false;
+            if (field.equalsIgnoreCase("Crawl-delay")) {
+                long delay;
+                try {
+                    // Seconds, possibly fractional.
+                    delay = Math.round(Double.parseDouble(value) * 1000);
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                if (inAgentGroup) {
+                    agentDelay = Math.max(delay, 0);
+                }
+                if (inAnyGroup) {
+                    anyDelay = Math.max(delay, 0);
+                }
+            }
+        }
+        return agentDelay >= 0 ? agentDelay : Math.max(anyDelay, 0);
+    }
+    
+    /**
+     * @return number of hosts fetched from.
+     */
+    public int getHostCount() {
+        return hosts.size();
+    }
+    
+    @Override
+    public String toString() {
+        long fetches = 0, errors = 0, throttled = 0, skipped = 0, maxDelay = 0;
+        String slowestHost = null;
+        for (Map.Entry<String, HostPoliteness> entry : hosts.entrySet()) {
+            HostPoliteness host = entry.getValue();
+            fetches += host.getFetches();
+            errors += host.getErrors();
+            throttled += host.getThrottled();
+            if (host.isSkipped()) {
+                skipped++;
+            }
+            if (slowestHost == null || host.getDelay() > maxDelay) {
+                maxDelay = host.getDelay();
+                slowestHost = entry.getKey();
+            }
+        }
+        return super.toString() +
+                " hosts: " + hosts.size() +
+                " fetches: " + fetches +
+                " errors: " + errors +
+                " throttled: " + throttled +
+                " skipped hosts: " + skipped +
+                " max delay (ms): " + maxDelay + (slowestHost == null ? "" : " (" + slowestHost + ")");
+    }
+}
@@ -0,0 +1,76 @@
+package com.merzadyan.crawler;
+
+import org.apache.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the NLP analysis of crawled pages on a bounded pool of worker threads. This decouples the number of threads
+ * doing CPU-heavy analysis from the number of crawler threads doing I/O-bound fetching.
+ */
+class AnalysisExecutor {
+    private static final Logger LOGGER = Logger.getLogger(AnalysisExecutor.class.getName());
+    
+    private final ExecutorService executor;
+    /**
+     * One permit per running or queued task. Crawler threads block in #submit once all permits are taken, which
+     * applies back-pressure to fetching when the analysers fall behind.
+     */
+    private final Semaphore permits;
+    
+    AnalysisExecutor(int numberOfAnalysers, int queueCapacity) {
+        permits = new Semaphore(numberOfAnalysers + queueCapacity);
+        // The queue is bounded by the permits rather than by its own capacity.
+        executor = new ThreadPoolExecutor(numberOfAnalysers, numberOfAnalysers, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new AnalyserThreadFactory());
+    }
+    
+    /**
+     * Queues the task for analysis; blocks the calling thread whilst the queue is full.
+     *
+     * @throws InterruptedException if interrupted whilst waiting for space in the queue.
+     */
+    void submit(Runnable task) throws InterruptedException {
+        permits.acquire();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    LOGGER.error("#submit: analysis task failed.", e);
+                } finally {
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            throw e;
+        }
+    }
+    
+    /**
+     * Stops accepting new tasks; tasks which have already been queued are still run.
+     */
+    void shutdown() {
+        executor.shutdown();
+    }
+    
+    private static class AnalyserThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+        
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "Analyser " + count.incrementAndGet());
+            // Analysers must not keep the application alive once the window is closed.
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
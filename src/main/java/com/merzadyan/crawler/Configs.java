@@ -1,16 +1,39 @@
 package com.merzadyan.crawler;
 
+import com.merzadyan.analyser.AnalysisCache;
+import com.merzadyan.stock.DateCategoriser;
+import com.merzadyan.stock.StockMatcher;
+
 import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Supplier;
 
 class Configs {
     private LocalDate startDate,
             endDate;
+    private DateCategoriser dateCategoriser;
     private int maxCrawledPages;
+    private AnalysisExecutor analysisExecutor;
+    private CrawlMetrics crawlMetrics = new CrawlMetrics();
+    private ResultAggregator resultAggregator = new ResultAggregator();
+    private CrawlBudget crawlBudget;
+    private UrlPrioritiser urlPrioritiser = new UrlPrioritiser();
+    private UrlFilter urlFilter = new UrlFilter();
+    private DuplicateDetector duplicateDetector = new DuplicateDetector();
+    private AnalysisCache analysisCache;
+    private RevalidationStore revalidationStore;
+    /**
+     * Copy-on-write as listeners may be added during the crawl.
+     */
+    private final List<ResultListener> resultListeners = new CopyOnWriteArrayList<>();
+    private Supplier<StockMatcher> stockMatcherSource;
     
     public Configs(LocalDate startDate, LocalDate endDate, int maxCrawledPages) {
         this.startDate = startDate;
         this.endDate = endDate;
         this.maxCrawledPages = maxCrawledPages;
+        this.crawlBudget = new CrawlBudget(maxCrawledPages, 0, 0);
     }
     
     public LocalDate getStartDate() {
@@ -29,6 +52,14 @@ class Configs {
         this.endDate = endDate;
     }
     
+    public DateCategoriser getDateCategoriser() {
+        return dateCategoriser;
+    }
+    
+    public void setDateCategoriser(DateCategoriser dateCategoriser) {
+        this.dateCategoriser = dateCategoriser;
+    }
+    
     public int getMaxCrawledPages() {
         return maxCrawledPages;
     }
@@ -36,4 +67,101 @@ class Configs {
     public void setMaxCrawledPages(int maxCrawledPages) {
         this.maxCrawledPages = maxCrawledPages;
     }
-}
+    
+    public AnalysisExecutor getAnalysisExecutor() {
+        return analysisExecutor;
+    }
+    
+    public void setAnalysisExecutor(AnalysisExecutor analysisExecutor) {
+        this.analysisExecutor = analysisExecutor;
+    }
+    
+    public CrawlMetrics getCrawlMetrics() {
+        return crawlMetrics;
+    }
+    
+    public void setCrawlMetrics(CrawlMetrics crawlMetrics) {
+        this.crawlMetrics = crawlMetrics;
+    }
+    
+    public ResultAggregator getResultAggregator() {
+        return resultAggregator;
+    }
+    
+    public void setResultAggregator(ResultAggregator resultAggregator) {
+        this.resultAggregator = resultAggregator;
+    }
+    
+    public CrawlBudget getCrawlBudget() {
+        return crawlBudget;
+    }
+    
+    public void setCrawlBudget(CrawlBudget crawlBudget) {
+        this.crawlBudget = crawlBudget;
+    }
+    
+    public UrlPrioritiser getUrlPrioritiser() {
+        return urlPrioritiser;
+    }
+    
+    public void setUrlPrioritiser(UrlPrioritiser urlPrioritiser) {
+        this.urlPrioritiser = urlPrioritiser;
+    }
+    
+    public UrlFilter getUrlFilter() {
+        return urlFilter;
+    }
+    
+    public void setUrlFilter(UrlFilter urlFilter) {
+        this.urlFilter = urlFilter;
+    }
+    
+    /**
+     * @return detector of near-duplicate articles shared by the crawlers; null if duplicates are analysed too.
+     */
+    public DuplicateDetector getDuplicateDetector() {
+        return duplicateDetector;
+    }
+    
+    public void setDuplicateDetector(DuplicateDetector duplicateDetector) {
+        this.duplicateDetector = duplicateDetector;
+    }
+    
+    /**
+     * @return cache of the analyses of the articles shared by the crawlers; null if articles are always analysed.
+     */
+    public AnalysisCache getAnalysisCache() {
+        return analysisCache;
+    }
+    
+    public void setAnalysisCache(AnalysisCache analysisCache) {
+        this.analysisCache = analysisCache;
+    }
+    
+    /**
+     * @return validators of the pages shared by the crawlers; null if pages are always downloaded.
+     */
+    public RevalidationStore getRevalidationStore() {
+        return revalidationStore;
+    }
+    
+    public void setRevalidationStore(RevalidationStore revalidationStore) {
+        this.revalidationStore = revalidationStore;
+    }
+    
+    public List<ResultListener> getResultListeners() {
+        return resultListeners;
+    }
+    
+    /**
+     * @return source of the matcher of the stocks of interest shared by the crawlers, which the crawlers read per
+     * page; null to use that of the SOIRegistry.
+     */
+    public Supplier<StockMatcher> getStockMatcherSource() {
+        return stockMatcherSource;
+    }
+    
+    public void setStockMatcherSource(Supplier<StockMatcher> stockMatcherSource) {
+        this.stockMatcherSource = stockMatcherSource;
+    }
+}
\ No newline at end of file
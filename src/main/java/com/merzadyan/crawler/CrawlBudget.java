@@ -0,0 +1,109 @@
+package com.merzadyan.crawler;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits of a single crawl, shared by all of its crawlers: pages visited, pages analysed and bytes fetched.
+ * A limit of 0 or less is unlimited.
+ * <p>
+ * The counters are atomic, thus the limits hold for the crawl as a whole however many crawlers there are. Once any
+ * limit is reached the budget is exhausted: the crawlers stop scheduling urls and the crawl is shut down.
+ */
+public class CrawlBudget {
+    private final long maxPages;
+    private final long maxAnalysedPages;
+    private final long maxBytes;
+    
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong analysedPages = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicBoolean exhausted = new AtomicBoolean();
+    
+    public CrawlBudget(long maxPages, long maxAnalysedPages, long maxBytes) {
+        this.maxPages = maxPages;
+        this.maxAnalysedPages = maxAnalysedPages;
+        this.maxBytes = maxBytes;
+    }
+    
+    /**
+     * Takes a page out of the budget. The page which takes the bytes fetched over the limit is still granted as it
+     * has been fetched already.
+     *
+     * @param pageSize bytes of the fetched page.
+     * @return true if the page is within the budget thus to be processed.
+     */
+    public boolean tryVisit(long pageSize) {
+        if (exhausted.get()) {
+            return false;
+        }
+        long visited = pages.incrementAndGet();
+        if (maxPages > 0 && visited > maxPages) {
+            // Only granted pages are counted.
+            pages.decrementAndGet();
+            exhausted.set(true);
+            return false;
+        }
+        long fetched = bytes.addAndGet(pageSize);
+        if ((maxPages > 0 && visited == maxPages) || (maxBytes > 0 && fetched >= maxBytes)) {
+            exhausted.set(true);
+        }
+        return true;
+    }
+    
+    /**
+     * Takes an analysis out of the budget; unlike pages, analyses are granted until the limit is reached even if
+     * the budget has been exhausted by another limit, so that the granted pages are analysed.
+     *
+     * @return true if the page is to be analysed.
+     */
+    public boolean tryAnalyse() {
+        long analysed = analysedPages.incrementAndGet();
+        if (maxAnalysedPages <= 0) {
+            return true;
+        }
+        if (analysed > maxAnalysedPages) {
+            // Only granted analyses are counted.
+            analysedPages.decrementAndGet();
+            return false;
+        }
+        if (analysed == maxAnalysedPages) {
+            exhausted.set(true);
+        }
+        return true;
+    }
+    
+    /**
+     * @return true once any of the limits has been reached.
+     */
+    public boolean isExhausted() {
+        return exhausted.get();
+    }
+    
+    /**
+     * @return pages granted.
+     */
+    public long getPages() {
+        return pages.get();
+    }
+    
+    public long getAnalysedPages() {
+        return analysedPages.get();
+    }
+    
+    public long getBytes() {
+        return bytes.get();
+    }
+    
+    @Override
+    public String toString() {
+        return "pages: " + pages.get() + "/" + limitOf(maxPages) +
+                " analysed pages: " + analysedPages.get() + "/" + limitOf(maxAnalysedPages) +
+                " bytes: " + bytes.get() + "/" + limitOf(maxBytes) +
+                " exhausted: " + exhausted.get();
+    }
+    
+    private static String limitOf(long max) {
+        return max > 0 ? String.valueOf(max) : "unlimited";
+    }
+}
@@ -0,0 +1,120 @@
+package com.merzadyan.crawler;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * End-to-end metrics of a single crawl, shared by its crawlers: pages visited and articles analysed per second and
+ * the time it took for results to become available.
+ * <p>
+ * Times are measured from the construction of the metrics i.e. the start of the crawl. The time to results includes
+ * the delays of crawler4j in detecting that the crawlers have run out of links.
+ */
+public class CrawlMetrics {
+    private final long startTime = System.nanoTime();
+    
+    private final LongAdder pagesVisited = new LongAdder();
+    private final LongAdder articlesAnalysed = new LongAdder();
+    private final LongAdder resultsRecorded = new LongAdder();
+    
+    // 0 until the event occurs.
+    private final AtomicLong firstResultTime = new AtomicLong();
+    private final AtomicLong lastResultTime = new AtomicLong();
+    private final AtomicLong publishTime = new AtomicLong();
+    
+    void pageVisited() {
+        pagesVisited.increment();
+    }
+    
+    /**
+     * Called once an article has gone through the analyser, whether or not a score was found.
+     */
+    void articleAnalysed() {
+        articlesAnalysed.increment();
+    }
+    
+    void resultRecorded() {
+        resultsRecorded.increment();
+        long now = System.nanoTime();
+        firstResultTime.compareAndSet(0, now);
+        lastResultTime.set(now);
+    }
+    
+    /**
+     * Called whenever a crawler publishes its results; the last call marks the end of the crawl.
+     */
+    void resultsPublished() {
+        publishTime.set(System.nanoTime());
+    }
+    
+    public long getPagesVisited() {
+        return pagesVisited.sum();
+    }
+    
+    public long getArticlesAnalysed() {
+        return articlesAnalysed.sum();
+    }
+    
+    public long getResultsRecorded() {
+        return resultsRecorded.sum();
+    }
+    
+    /**
+     * @return time since the start of the crawl; up until the results were last published if the crawl is over.
+     */
+    public long getElapsedTime(TimeUnit unit) {
+        long end = publishTime.get();
+        return unit.convert((end == 0 ? System.nanoTime() : end) - startTime, TimeUnit.NANOSECONDS);
+    }
+    
+    public double getPagesPerSecond() {
+        return perSecond(getPagesVisited());
+    }
+    
+    public double getAnalysesPerSecond() {
+        return perSecond(getArticlesAnalysed());
+    }
+    
+    /**
+     * @return time from the start of the crawl until the first sentiment score was recorded; -1 if none was.
+     */
+    public long getTimeToFirstResult(TimeUnit unit) {
+        return since(firstResultTime.get(), unit);
+    }
+    
+    /**
+     * @return time from the start of the crawl until the last sentiment score was recorded; -1 if none was.
+     */
+    public long getTimeToLastResult(TimeUnit unit) {
+        return since(lastResultTime.get(), unit);
+    }
+    
+    /**
+     * @return time from the start of the crawl until the results were last published; -1 if they were not yet.
+     */
+    public long getTimeToPublish(TimeUnit unit) {
+        return since(publishTime.get(), unit);
+    }
+    
+    private double perSecond(long count) {
+        long elapsed = getElapsedTime(TimeUnit.NANOSECONDS);
+        return elapsed == 0 ? 0 : count * 1e9 / elapsed;
+    }
+    
+    private long since(long time, TimeUnit unit) {
+        return time == 0 ? -1 : unit.convert(time - startTime, TimeUnit.NANOSECONDS);
+    }
+    
+    @Override
+    public String toString() {
+        return "pages visited: " + getPagesVisited() +
+                " articles analysed: " + getArticlesAnalysed() +
+                " results recorded: " + getResultsRecorded() +
+                " pages/s: " + String.format("%.2f", getPagesPerSecond()) +
+                " analyses/s: " + String.format("%.2f", getAnalysesPerSecond()) +
+                " time to first result (ms): " + getTimeToFirstResult(TimeUnit.MILLISECONDS) +
+                " time to last result (ms): " + getTimeToLastResult(TimeUnit.MILLISECONDS) +
+                " time to publish (ms): " + getTimeToPublish(TimeUnit.MILLISECONDS);
+    }
+}
@@ -1,28 +1,30 @@
 package com.merzadyan.crawler;
 
 import com.merzadyan.stock.SOIRegistry;
+import com.merzadyan.analyser.Analysis;
+import com.merzadyan.analyser.AnalysisCache;
+import com.merzadyan.analyser.PipelinePool;
 import com.merzadyan.analyser.SentientAnalyser;
+import com.merzadyan.stock.DateCategoriser;
 import com.merzadyan.stock.Stock;
+import com.merzadyan.stock.StockMatcher;
+import edu.uci.ics.crawler4j.crawler.CrawlController;
 import edu.uci.ics.crawler4j.crawler.Page;
 import edu.uci.ics.crawler4j.crawler.WebCrawler;
 import edu.uci.ics.crawler4j.parser.HtmlParseData;
 import edu.uci.ics.crawler4j.url.WebURL;
-import org.ahocorasick.trie.Trie;
+import org.apache.http.Header;
 import org.apache.log4j.Logger;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.regex.Pattern;
-
-import static java.util.regex.Pattern.compile;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 // TODO: add a max breadth crawl limit too...
 class Crawler extends WebCrawler {
@@ -30,20 +32,63 @@ class Crawler extends WebCrawler {
     
     private int linksVisited;
     
-    private Trie trie;
+    /**
+     * Source of the current matcher of the stocks of interest; read per page so that edits to the stocks of interest
+     * take effect during the crawl.
+     */
+    private Supplier<StockMatcher> stockMatcherSource;
     
-    private HashMap<Stock, ArrayList<Integer>> soiScoreMap;
+    /**
+     * Crawl-wide histograms of the sentiment scores; shared by the crawlers.
+     */
+    private ResultAggregator resultAggregator;
+    private List<ResultListener> resultListeners;
+    
+    private AnalysisExecutor analysisExecutor;
+    /**
+     * Tracks the articles of this crawler which are queued or being analysed; a party is registered per article.
+     */
+    private final Phaser pendingAnalyses = new Phaser(1);
+    private CrawlMetrics crawlMetrics;
     
     private LocalDate startDate,
             endDate;
-    private int maxCrawledPages;
+    /**
+     * Buckets of the dates of the crawl, e.g. weeks; null if the crawl is a single interval.
+     */
+    private DateCategoriser dateCategoriser;
+    /**
+     * Crawl-wide limits on pages, analyses and bytes; shared by the crawlers.
+     */
+    private CrawlBudget crawlBudget;
+    /**
+     * Crawl-wide scores of the discovered urls; learns which hosts yield results.
+     */
+    private UrlPrioritiser urlPrioritiser;
+    /**
+     * Crawl-wide pre-filter of the discovered urls; rejects urls of non-text resources and unwanted hosts.
+     */
+    private UrlFilter urlFilter;
+    /**
+     * Crawl-wide index of the fingerprints of the articles; null if near-duplicates are analysed too.
+     */
+    private DuplicateDetector duplicateDetector;
+    /**
+     * Analyses of the articles of this and earlier crawls, by their text; null if articles are always analysed.
+     */
+    private AnalysisCache analysisCache;
+    /**
+     * Validators of the pages analysed by this and earlier crawls; null if pages are always downloaded.
+     */
+    private RevalidationStore revalidationStore;
     
     private CrawlerTerminationListener terminationListener;
     
     /**
-     * List of file extensions to filter out urls which are non-text, non-readable resources.
+     * Text and trie matches of the pages being processed; shared by {@link #shouldVisit} and {@link #visit}.
      */
-    private static final Pattern FILTERS = constructPattern();
+    private final PageContentCache pageContentCache = new PageContentCache(PageContentCache.DEFAULT_CAPACITY);
+    private final HtmlTextExtractor textExtractor = new HtmlTextExtractor();
     
     Crawler(CrawlerTerminationListener terminationListener, Configs configs) {
         if (configs.getStartDate() == null || configs.getEndDate() == null) {
@@ -52,63 +97,22 @@ class Crawler extends WebCrawler {
         }
         this.startDate = configs.getStartDate();
         this.endDate = configs.getEndDate();
-        this.maxCrawledPages = configs.getMaxCrawledPages();
+        this.dateCategoriser = configs.getDateCategoriser();
+        this.crawlBudget = configs.getCrawlBudget();
+        this.urlPrioritiser = configs.getUrlPrioritiser();
+        this.urlFilter = configs.getUrlFilter();
+        this.duplicateDetector = configs.getDuplicateDetector();
+        this.analysisCache = configs.getAnalysisCache();
+        this.revalidationStore = configs.getRevalidationStore();
         this.terminationListener = terminationListener;
+        this.analysisExecutor = configs.getAnalysisExecutor();
+        this.crawlMetrics = configs.getCrawlMetrics();
+        this.resultAggregator = configs.getResultAggregator();
+        this.resultListeners = configs.getResultListeners();
         linksVisited = 0;
-        soiScoreMap = new HashMap<>();
-        constructTrie();
-    }
-    
-    private static Pattern constructPattern() {
-        String[] EXCLUDED_URLS = {
-                // Image.
-                "mng", "pct", "bmp", "gif", "jpg", "jpeg", "png", "pst", "psp", "tif",
-                "tiff", "ai", "drw", "dxf", "eps", "ps", "svg",
-                
-                // Video
-                "3gp", "asf", "asx", "avi", "mov", "mp4", "mpg", "qt", "rm", "swf", "wmv",
-                "m4a",
-                
-                // Audio.
-                "mp3", "wma", "ogg", "wav", "ra", "aac", "mid", "au", "aiff",
-                
-                // Misc.
-                "css", "js", "pdf", "doc", "exe", "bin", "rss", "zip", "rar"
-        };
-        StringBuilder urlsToFilter = new StringBuilder();
-        for (int i = 0; i < EXCLUDED_URLS.length; i++) {
-            urlsToFilter.append(EXCLUDED_URLS[i].toLowerCase());
-            if (i != EXCLUDED_URLS.length - 1) {
-                urlsToFilter.append("|");
-            }
-        }
-        return compile("\".*(\\\\.(" + urlsToFilter.toString() + "))$");
-    }
-    
-    private void constructTrie() {
-        SOIRegistry soiRegistry = SOIRegistry.getInstance();
-        if (soiRegistry == null) {
-            LOGGER.error("SOIRegistry: null.");
-            return;
-        }
-        
-        TreeSet<Stock> stockSet = soiRegistry.getSoiSet();
-        ArrayList<String> companyKeys = new ArrayList<>();
-        for (Stock stock : stockSet) {
-            if (stock != null) {
-                // NOTE: case does not matter when processed; case is ignored as stated in trie construction.
-                if (stock.getCompany() != null && !stock.getCompany().isEmpty()) {
-                    companyKeys.add(stock.getCompany());
-                }
-            }
-        }
-        
-        // See https://github.com/robert-bor/aho-corasick
-        trie = Trie.builder()
-                // IMPORTANT: ignoreCase() must be called before adding keywords.
-                .ignoreCase()
-                .addKeywords(companyKeys)
-                .build();
+        // The matcher is compiled once per edit of the stocks of interest and shared by the crawlers.
+        this.stockMatcherSource = configs.getStockMatcherSource() != null ?
+                configs.getStockMatcherSource() : SOIRegistry.getInstance()::getStockMatcher;
     }
     
     /**
@@ -123,29 +127,29 @@ class Crawler extends WebCrawler {
      */
     @Override
     public boolean shouldVisit(Page referringPage, WebURL url) {
-        String href = url.getURL().toLowerCase();
-        // Determines whether href contains one of the file extensions (to not crawl).
-        boolean matchesFilter = FILTERS.matcher(href).matches();
-        
-        // If the href contains one of the file extensions (to not crawl) then do not visit that page.
-        if (matchesFilter) {
-            LOGGER.debug("#shouldVisit: not visiting: " + url.getURL() + " as matchesFilter: true.");
+        // No more urls are scheduled once the budget is exhausted.
+        if (crawlBudget.isExhausted()) {
+            return false;
+        }
+        // Urls of non-text resources, unwanted hosts etc. are rejected before the referring page is looked at.
+        // NOTE: not logged per url as this is run for every outlink; the rejects are counted by the filter.
+        if (urlFilter.reject(url) != null) {
             return false;
         }
         
         // Use Aho-Corasick to further filter which pages to ones containing info about select-companies.
         if (referringPage.getParseData() instanceof HtmlParseData) {
-            HtmlParseData htmlParseData = (HtmlParseData) referringPage.getParseData();
-            Document document = Jsoup.parseBodyFragment(htmlParseData.getHtml());
-            String contentText = document.body().text();
-            boolean firstMatch = trie != null && trie.firstMatch(contentText) != null;
-            // Using #firstMatch for optimisation purposes - as long as there is
-            // at least one mention of a SOI then it is unnecessary to process further.
-            if (!firstMatch) {
-                LOGGER.debug("#shouldVisit: not visiting: " + url.getURL() + " as page does not have a reference to a company listed " +
-                        "in the trie.");
+            PageContentCache.Content content = contentOf(referringPage);
+            // The most relevant urls are fetched first so that the crawl budget yields as many scores as possible.
+            int priority = urlPrioritiser.prioritise(url, content.getEmits().size(), content.getText().length(),
+                    content.getStockMatcher());
+            if (priority == UrlPrioritiser.DROP) {
+                LOGGER.debug("#shouldVisit: not visiting: " + url.getURL() + " as neither the page nor the url " +
+                        "has a reference to a company listed in the trie.");
+                return false;
             }
-            return firstMatch;
+            url.setPriority((byte) priority);
+            return true;
         }
         
         LOGGER.debug("#shouldVisit: not visiting: " + url.getURL() + " as referring page is not an instance of HtmlParseData.");
@@ -153,95 +157,263 @@ class Crawler extends WebCrawler {
         return false;
     }
     
+    /**
+     * Extracts the body text of the page and finds the companies listed in the trie which it mentions. The page is
+     * parsed once; the content is cached for the remaining outgoing urls of the page and for {@link #visit}.
+     * The content is matched again if the stocks of interest have changed in the meantime.
+     */
+    private PageContentCache.Content contentOf(Page page) {
+        String url = page.getWebURL().getURL();
+        StockMatcher stockMatcher = stockMatcherSource.get();
+        PageContentCache.Content content = pageContentCache.get(url);
+        if (content == null) {
+            HtmlParseData htmlParseData = (HtmlParseData) page.getParseData();
+            // Streams the text out of the html rather than building a DOM only to read its text.
+            String contentText = textExtractor.extract(htmlParseData.getHtml());
+            content = new PageContentCache.Content(contentText, stockMatcher.parseText(contentText), stockMatcher);
+            pageContentCache.put(url, content);
+        } else if (content.getStockMatcher() != stockMatcher) {
+            String contentText = content.getText();
+            content = new PageContentCache.Content(contentText, stockMatcher.parseText(contentText), stockMatcher);
+            pageContentCache.put(url, content);
+        }
+        return content;
+    }
+    
     /**
      * This function is called when a page is fetched and ready
      * to be processed by your program.
      */
     @Override
     public void visit(Page page) {
-        if (linksVisited >= maxCrawledPages) {
-            onBeforeExit();
-            LOGGER.debug("linksVisited >= maxCrawledPages...after");
+        WebURL webUrl = page.getWebURL();
+        String url = webUrl.getURL();
+        byte[] contentData = page.getContentData();
+        if (!crawlBudget.tryVisit(contentData == null ? 0 : contentData.length)) {
+            // Fetched before the budget was exhausted by another crawler.
+            LOGGER.debug("#visit: crawl budget exhausted, page disregarded. URL: " + url);
+            shutdownIfBudgetExhausted();
+            return;
         }
+        // The page may have been the last one within the budget.
+        shutdownIfBudgetExhausted();
         
-        String url = page.getWebURL().getURL();
         // ++linksVisited has a prefix operation - increment variable and get value.
         LOGGER.debug("#visit: links visited: " + ++linksVisited + " URL: " + url);
+        crawlMetrics.pageVisited();
+        urlPrioritiser.pageVisited(webUrl.getDomain());
         
         if (page.getParseData() instanceof HtmlParseData) {
             HtmlParseData htmlParseData = (HtmlParseData) page.getParseData();
-            String html = htmlParseData.getHtml();
-            Document document = Jsoup.parseBodyFragment(html);
-            Element body = document.body();
-            String contentText = body.text();
+            // The outgoing urls of the page have been scheduled by now, thus its content is no longer needed by
+            // #shouldVisit.
+            PageContentCache.Content content = contentOf(page);
+            pageContentCache.evict(url);
+            String contentText = content.getText();
             Set<WebURL> links = htmlParseData.getOutgoingUrls();
             LOGGER.debug("#visit: url: " + url);
             LOGGER.debug("#visit: number of outgoing links: " + links.size());
             LOGGER.debug("#visit: text length: " + contentText.length());
             
-            String extractedDate = SentientAnalyser.findSUTime(contentText);
-            if (extractedDate == null) {
+            // Syndicated copies of an article are only analysed once, so that the story is only scored once; a copy is
+            // only recorded once its analysis is accepted.
+            long fingerprint = duplicateDetector == null || content.getEmits().isEmpty() ? 0 :
+                    DuplicateDetector.fingerprintOf(contentText);
+            if (duplicateDetector != null && !content.getEmits().isEmpty() &&
+                    duplicateDetector.isDuplicate(fingerprint)) {
+                LOGGER.debug("#visit: near-duplicate of an article seen before, page not analysed. URL: " + url);
                 return;
             }
             
-            try {
-                LocalDate date = LocalDate.parse(extractedDate);
-                LOGGER.debug("#visit: date: " + date + " startDate: " + startDate + " endDate: " + endDate);
-                if (date.isBefore(startDate) || date.isAfter(endDate)) {
-                    LOGGER.debug("#visit: not in-between.");
-                    return;
-                }
-            } catch (DateTimeParseException e) {
-                LOGGER.error("#visit: failed to parse: " + extractedDate + " into a LocalDate.");
-                e.printStackTrace();
+            // Only pages mentioning a stock of interest go through the analysers thus count towards the budget.
+            if (!content.getEmits().isEmpty() && !crawlBudget.tryAnalyse()) {
+                LOGGER.debug("#visit: analysis budget exhausted, page not analysed. URL: " + url);
+                shutdownIfBudgetExhausted();
                 return;
             }
+            shutdownIfBudgetExhausted();
             
-            LOGGER.debug("#visit: in-between.");
+            // The page is only downloaded again by later crawls if it has changed; otherwise its analysis, which is
+            // cached by its text, is reused. Only articles are revalidated, as the links of unchanged pages are lost.
+            if (revalidationStore != null && analysisCache != null && !content.getEmits().isEmpty()) {
+                long stockSignature = content.getStockMatcher().getSignature();
+                revalidationStore.put(url, headerOf(page, "ETag"), headerOf(page, "Last-Modified"),
+                        AnalysisCache.keyOf(contentText, stockSignature), AnalysisCache.signatureOf(stockSignature));
+            }
             
-            // #identifyOrganisationEntity returns a non-null result if the title contains a SOI.
-            String organisationEntity;
+            if (analysisExecutor == null) {
+                analyse(webUrl, content, fingerprint);
+                return;
+            }
+            
+            // Hand the text over to the analysers so that this crawler thread can carry on fetching.
+            pendingAnalyses.register();
+            try {
+                analysisExecutor.submit(() -> {
+                    try {
+                        analyse(webUrl, content, fingerprint);
+                    } finally {
+                        pendingAnalyses.arriveAndDeregister();
+                    }
+                });
+            } catch (InterruptedException e) {
+                pendingAnalyses.arriveAndDeregister();
+                Thread.currentThread().interrupt();
+                LOGGER.error("#visit: interrupted whilst queueing article for analysis. URL: " + url);
+            } catch (RejectedExecutionException e) {
+                pendingAnalyses.arriveAndDeregister();
+                LOGGER.error("#visit: failed to queue article for analysis. URL: " + url);
+            }
+        }
+    }
+    
+    /**
+     * Once the crawl budget is exhausted, stops the crawl: the frontier is closed so that no more urls are fetched and
+     * the crawlers terminate, after waiting for the pages already granted to be analysed.
+     */
+    private void shutdownIfBudgetExhausted() {
+        CrawlController controller = getMyController();
+        if (!crawlBudget.isExhausted() || controller == null || controller.isShuttingDown()) {
+            return;
+        }
+        LOGGER.debug("#shutdownIfBudgetExhausted: crawl budget exhausted: " + crawlBudget);
+        controller.shutdown();
+    }
+    
+    /**
+     * Analyses the text of an article and records its sentiment score against the identified stock.
+     * Runs on an analyser thread unless no analysis executor is configured.
+     *
+     * @param fingerprint fingerprint of the text as per the {@link DuplicateDetector}; 0 if not fingerprinted.
+     */
+    private void analyse(WebURL webUrl, PageContentCache.Content content, long fingerprint) {
+        // Articles analysed before, e.g. by an earlier crawl as the seeds still link to them, are not analysed again.
+        long cacheKey = analysisCache == null ? 0 :
+                AnalysisCache.keyOf(content.getText(), content.getStockMatcher().getSignature());
+        Analysis analysis = analysisCache == null ? null : analysisCache.get(cacheKey, startDate, endDate);
+        if (analysis != null) {
+            crawlMetrics.articleAnalysed();
+        } else {
             try {
-                organisationEntity = SentientAnalyser.identifyOrganisationEntity(contentText, trie);
+                // A single annotation pass finds the date, organisation entity and sentiment; it stops at the first
+                // stage that fails e.g. when the date is missing or not in-between the start and end dates.
+                // The trie matches pick the sentences which are annotated by the NER and sentiment stages. The same
+                // matcher as the one which found the matches identifies the organisation, even if it has been
+                // replaced.
+                analysis = SentientAnalyser.analyse(content.getText(), content.getEmits(),
+                        content.getStockMatcher(), startDate, endDate);
             } catch (Exception e) {
-                LOGGER.error("#visit: failed to identify organisational entity in article.");
+                LOGGER.error("#analyse: failed to analyse article.");
                 e.printStackTrace();
                 return;
+            } finally {
+                crawlMetrics.articleAnalysed();
             }
-            
-            if (organisationEntity == null) {
-                LOGGER.debug("#visit: failed to identify an organisational entity in article.");
+            if (analysisCache != null) {
+                analysisCache.put(cacheKey, analysis);
+            }
+        }
+        // The same matcher as the one which found the matches maps the organisation to its stock.
+        score(webUrl, analysis, content.getStockMatcher(), fingerprint);
+    }
+    
+    /**
+     * Records the sentiment score of the analysis against the stock of its organisation entity, if any.
+     *
+     * @param fingerprint fingerprint of the text, recorded by the duplicate detector if the analysis is accepted; 0
+     *                    if not fingerprinted.
+     */
+    private void score(WebURL webUrl, Analysis analysis, StockMatcher stockMatcher, long fingerprint) {
+        // #getOrganisation returns a non-null result if the date is in-between and the text contains a SOI.
+        String organisationEntity = analysis.getOrganisation();
+        if (organisationEntity == null) {
+            LOGGER.debug("#analyse: article rejected at stage: " + analysis.getRejectedAt());
+            return;
+        }
+        
+        // Results are recorded against the stock the entity refers to, e.g. "RBS" and "Royal Bank of Scotland"
+        // both against "The Royal Bank of Scotland Group", so that the mentions of a stock are tallied together.
+        int stockId = stockMatcher.stockIdOf(organisationEntity);
+        LOGGER.debug("#analyse: date: " + analysis.getDate() + " company: " + organisationEntity +
+                " stock id: " + stockId);
+        if (stockId == -1) {
+            // NOTE: the analyser only picks entities which refer to a stock of the matcher; the stocks of interest may
+            // have changed since a cached analysis was made.
+            LOGGER.debug("#analyse: organisation entity does not refer to a stock of interest.");
+            return;
+        }
+        
+        int score = analysis.getSentiment();
+        
+        LOGGER.debug("#analyse: sentiment value: " + score);
+        // Disregard -1 returns.
+        if (score == -1) {
+            return;
+        }
+        LocalDate articleDate = null;
+        try {
+            articleDate = LocalDate.parse(analysis.getDate());
+        } catch (DateTimeParseException e) {
+            LOGGER.debug("#analyse: unparsable date: " + analysis.getDate());
+        }
+        // The score of a bucketed crawl is recorded in the buckets of the date of the article; more than one if the
+        // buckets are rolling windows.
+        int firstBucket = 0, lastBucket = 0;
+        if (dateCategoriser != null) {
+            lastBucket = articleDate == null ? -1 : dateCategoriser.bucketOf(articleDate);
+            if (lastBucket == -1) {
+                LOGGER.debug("#analyse: date: " + analysis.getDate() + " not in any bucket.");
                 return;
             }
-            
-            LOGGER.debug("#visit: company: " + organisationEntity);
-            
-            Stock stock = new Stock();
-            stock.setCompany(organisationEntity);
-            stock.setStartDate(startDate);
-            stock.setEndDate(endDate);
-            
-            int score = -1;
+            firstBucket = dateCategoriser.firstBucketOf(articleDate);
+        }
+        if (fingerprint != 0 && !duplicateDetector.record(fingerprint)) {
+            LOGGER.debug("#analyse: near-duplicate of an article accepted in the meantime, not scored. URL: " +
+                    webUrl.getURL());
+            return;
+        }
+        Stock stock = stockMatcher.getStock(stockId);
+        record(stockId, stock, firstBucket, lastBucket, score);
+        // Links to the host are fetched sooner the more of its pages yield a score.
+        urlPrioritiser.pageYielded(webUrl.getDomain());
+        notifyResult(stock, articleDate, score, webUrl.getURL());
+    }
+    
+    /**
+     * Streams the result of an article to the result listeners as soon as it is recorded.
+     *
+     * @param articleDate null if the date of the article is unparsable.
+     */
+    private void notifyResult(Stock stock, LocalDate articleDate, int score, String url) {
+        if (resultListeners.isEmpty()) {
+            return;
+        }
+        for (ResultListener listener : resultListeners) {
             try {
-                score = SentientAnalyser.findSentiment(contentText);
+                listener.onResult(stock, articleDate, score, url);
             } catch (Exception e) {
+                // A failing listener must not fail the analysis nor keep the other listeners from the result.
                 e.printStackTrace();
             }
-            
-            LOGGER.debug("#visit: sentiment value: " + score);
-            // Disregard -1 returns.
-            if (score != -1) {
-                if (soiScoreMap == null) {
-                    soiScoreMap = new HashMap<>();
-                }
-                
-                // Initialise scores array list associated with stock if null.
-                soiScoreMap.computeIfAbsent(stock, k -> new ArrayList<>());
-                soiScoreMap.get(stock).add(score);
-            }
         }
     }
     
+    /**
+     * Records a sentiment score against the stock in the crawl-wide histograms.
+     *
+     * @param stockId     id of the stock as assigned by the {@link SOIRegistry}.
+     * @param firstBucket index of the first bucket of the date of the article; 0 if the crawl is a single interval.
+     * @param lastBucket  index of the last bucket of the date of the article.
+     * @param score       sentiment score in a range of 0-4.
+     */
+    void record(int stockId, Stock stock, int firstBucket, int lastBucket, int score) {
+        // Lock-free; the analysers of every crawler record scores concurrently.
+        for (int bucket = firstBucket; bucket <= lastBucket; bucket++) {
+            resultAggregator.record(stockId, stock, bucket, score);
+        }
+        crawlMetrics.resultRecorded();
+    }
+    
     /**
      * Called just before the termination of the current
      * crawler instance. It can be used for persisting in-memory data or other
@@ -249,66 +421,140 @@ class Crawler extends WebCrawler {
      */
     @Override
     public void onBeforeExit() {
-        soiScoreMap.forEach((stock, scores) -> {
-            // The array facilitates tallying of scores.
-            int[] histogram = new int[5];
-            // Determine the most frequent sentiment score for this stock.
-            for (int score : scores) {
-                switch (score) {
-                    case 0:
-                        histogram[0] += 1;
-                        break;
-                    case 1:
-                        histogram[1] += 1;
-                        break;
-                    case 2:
-                        histogram[2] += 1;
-                        break;
-                    case 3:
-                        histogram[3] += 1;
-                        break;
-                    case 4:
-                        histogram[4] += 1;
-                        break;
-                    default:
-                        break;
-                }
-            }
-            int highestFrequency = -1, indexOfHighestFrequency = -1;
-            
-            // Determine largest value in array thus most frequent sentiment score.
-            for (int i = 0; i < histogram.length; i++) {
-                int frequency = histogram[i];
-                if (frequency > highestFrequency) {
-                    highestFrequency = frequency;
-                    indexOfHighestFrequency = i;
-                }
-            }
-            
-            LOGGER.debug("#onBeforeExit: Stock: " + stock.getCompany() + " Histogram: " + Arrays.toString(histogram) +
-                    " Predominant sentiment: " + highestFrequency);
-            // Mark stock with the latest sentiment score.
-            stock.setLatestSentimentScore(indexOfHighestFrequency);
-            stock.setHistogram(histogram);
-            stock.setStartDate(startDate);
-            stock.setEndDate(endDate);
-        });
+        // Wait for the articles queued by this crawler to be analysed.
+        pendingAnalyses.arriveAndAwaitAdvance();
+        
+        // The scores of every crawler are recorded in the same histograms, thus no merging is needed.
+        List<Stock> results = resultAggregator.snapshot(startDate, endDate);
+        for (Stock stock : results) {
+            LOGGER.debug("#onBeforeExit: Stock: " + stock.getCompany() + " Histogram: " +
+                    Arrays.toString(stock.getHistogram()) + " Predominant sentiment: " +
+                    stock.getLatestSentimentScore());
+        }
+        
+        LOGGER.debug("#onBeforeExit: rejected articles by stage:" +
+                " match: " + SentientAnalyser.getRejectCount(SentientAnalyser.Stage.MATCH) +
+                " date: " + SentientAnalyser.getRejectCount(SentientAnalyser.Stage.DATE) +
+                " organisation: " + SentientAnalyser.getRejectCount(SentientAnalyser.Stage.ORGANISATION) +
+                " sentiment: " + SentientAnalyser.getRejectCount(SentientAnalyser.Stage.SENTIMENT) +
+                " accepted: " + SentientAnalyser.getAcceptCount());
+        PipelinePool pipelinePool = SentientAnalyser.getPipelinePool();
+        LOGGER.debug("#onBeforeExit: pipeline pool:" +
+                " size: " + pipelinePool.getSize() +
+                " created: " + pipelinePool.getCreatedCount() +
+                " checkouts: " + pipelinePool.getCheckoutCount() +
+                " contended: " + pipelinePool.getContendedCheckoutCount() +
+                " wait time (ms): " + pipelinePool.getWaitTime(TimeUnit.MILLISECONDS));
         
-        publish(soiScoreMap);
+        LOGGER.debug("#onBeforeExit: page content cache:" +
+                " hits: " + pageContentCache.getHitCount() +
+                " misses: " + pageContentCache.getMissCount());
+        
+        LOGGER.debug("#onBeforeExit: crawl budget: " + crawlBudget);
+        LOGGER.debug("#onBeforeExit: url filter: " + urlFilter);
+        if (duplicateDetector != null) {
+            LOGGER.debug("#onBeforeExit: duplicate detector: " + duplicateDetector);
+        }
+        if (analysisCache != null) {
+            LOGGER.debug("#onBeforeExit: analysis cache: " + analysisCache);
+        }
+        LOGGER.debug("#onBeforeExit: url prioritiser:" +
+                " prioritised: " + urlPrioritiser.getPrioritisedCount() +
+                " dropped: " + urlPrioritiser.getDroppedCount());
+        
+        crawlMetrics.resultsPublished();
+        LOGGER.debug("#onBeforeExit: crawl metrics: " + crawlMetrics);
+        publish(results);
     }
     
     /**
-     * Publishes the results of web crawl to listeners. The map holds stocks with a sentiment score
+     * Publishes the results of web crawl to listeners. The list holds stocks with a sentiment score
      * property indicating future performance based on current affairs.
      */
-    private void publish(HashMap<Stock, ArrayList<Integer>> map) {
+    private void publish(List<Stock> results) {
         if (terminationListener != null) {
-            terminationListener.onTermination(map);
+            terminationListener.onTermination(results);
+        }
+    }
+    
+    private static String headerOf(Page page, String name) {
+        if (page.getFetchResponseHeaders() == null) {
+            return null;
+        }
+        for (Header header : page.getFetchResponseHeaders()) {
+            if (name.equalsIgnoreCase(header.getName())) {
+                return header.getValue();
+            }
         }
+        return null;
     }
     
+    /**
+     * A page which has not changed since it was last analysed is answered with 304 Not Modified, which crawler4j
+     * does not process; the page is visited by reusing its last analysis instead, unless the stocks of interest have
+     * changed since, in which case the page is fetched again.
+     */
     @Override
-    protected void onPageBiggerThanMaxSize(String urlStr, long pageSize) {
+    protected void onUnexpectedStatusCode(String urlStr, int statusCode, String contentType, String description) {
+        RevalidationStore.Entry entry = revalidationStore == null ? null : revalidationStore.get(urlStr);
+        if (statusCode != RevalidatingPageFetcher.NOT_MODIFIED || entry == null || analysisCache == null) {
+            super.onUnexpectedStatusCode(urlStr, statusCode, contentType, description);
+            return;
+        }
         
+        StockMatcher stockMatcher = stockMatcherSource.get();
+        if (entry.getSignature() != AnalysisCache.signatureOf(stockMatcher.getSignature())) {
+            // NOTE: the stocks of interest have changed since the request was sent, thus the last analysis is of
+            // other stocks; as the signature no longer matches, the page is requested unconditionally this time.
+            LOGGER.debug("#onUnexpectedStatusCode: stocks of interest changed, refetching URL: " + urlStr);
+            refetch(urlStr);
+            return;
+        }
+        
+        if (!crawlBudget.tryVisit(0)) {
+            LOGGER.debug("#onUnexpectedStatusCode: crawl budget exhausted, page disregarded. URL: " + urlStr);
+            shutdownIfBudgetExhausted();
+            return;
+        }
+        shutdownIfBudgetExhausted();
+        LOGGER.debug("#onUnexpectedStatusCode: links visited: " + ++linksVisited + " not modified URL: " + urlStr);
+        WebURL webUrl = new WebURL();
+        webUrl.setURL(urlStr);
+        crawlMetrics.pageVisited();
+        urlPrioritiser.pageVisited(webUrl.getDomain());
+        
+        if (!crawlBudget.tryAnalyse()) {
+            LOGGER.debug("#onUnexpectedStatusCode: analysis budget exhausted, page not analysed. URL: " + urlStr);
+            shutdownIfBudgetExhausted();
+            return;
+        }
+        Analysis analysis = analysisCache.get(entry.getAnalysisKey(), startDate, endDate);
+        if (analysis == null) {
+            // NOTE: evicted from the cache since the request was sent.
+            LOGGER.debug("#onUnexpectedStatusCode: analysis no longer cached. URL: " + urlStr);
+            return;
+        }
+        crawlMetrics.articleAnalysed();
+        score(webUrl, analysis, stockMatcher, 0);
+    }
+    
+    /**
+     * Schedules a url which has been fetched already, under its doc id, ahead of the other urls.
+     */
+    private void refetch(String urlStr) {
+        CrawlController controller = getMyController();
+        if (controller == null || controller.isShuttingDown()) {
+            return;
+        }
+        WebURL webUrl = new WebURL();
+        webUrl.setURL(urlStr);
+        webUrl.setDocid(controller.getDocIdServer().getDocId(urlStr));
+        webUrl.setPriority((byte) UrlPrioritiser.HIGHEST_PRIORITY);
+        controller.getFrontier().schedule(webUrl);
+    }
+    
+    @Override
+    protected void onPageBiggerThanMaxSize(String urlStr, long pageSize) {
+    
     }
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package com.merzadyan.crawler;
 
+import com.merzadyan.analyser.AnalysisCache;
+import com.merzadyan.analyser.SentientAnalyser;
 import com.merzadyan.seed.SeedUrl;
 import com.merzadyan.seed.SeedUrlRegistry;
+import com.merzadyan.stock.SOIRegistry;
 import com.merzadyan.stock.DateCategoriser;
+import com.merzadyan.stock.Stock;
 import edu.uci.ics.crawler4j.crawler.CrawlConfig;
 import edu.uci.ics.crawler4j.crawler.CrawlController;
 import edu.uci.ics.crawler4j.fetcher.PageFetcher;
@@ -10,17 +14,52 @@ import edu.uci.ics.crawler4j.robotstxt.RobotstxtConfig;
 import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
 import org.apache.log4j.Logger;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
 
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_ADAPTIVE_POLITENESS;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_ANALYSIS_CACHE;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_ANALYSIS_CACHE_CAPACITY;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_ANALYSIS_CACHE_FILE_NAME;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_ANALYSIS_CACHE_TIME_TO_LIVE;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_ANALYSIS_QUEUE_CAPACITY;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_BUCKET_SIZE;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_CRAWL_STORAGE_FOLDER;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_DUPLICATE_DETECTION;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_ENTITY_SCOPED_SENTIMENT;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_INCLUDE_HTTPS_PAGES;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_INTERVAL;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_MAX_ANALYSED_PAGES;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_MAX_CRAWLED_BYTES;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_MAX_CRAWLED_PAGES;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_MAX_DEPTH_OF_CRAWLING;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_MAX_QUERY_PARAMETERS;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_MAX_URL_LENGTH;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_NUMBER_OF_ANALYSERS;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_NUMBER_OF_CRAWLERS;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_POLITENESS_DELAY;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_REPLAY_BANDWIDTH;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_REPLAY_CORPUS_DIR;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_REPLAY_LATENCY;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_RESUMABLE_CRAWLING;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_REVALIDATION;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_REVALIDATION_STORE_FILE_NAME;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_SENTIMENT_WINDOW;
+import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_SNAPSHOT_INTERVAL;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_TEST;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_TEST_MODE;
 import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_USER_AGENT_STRING;
@@ -29,18 +68,50 @@ import static com.merzadyan.crawler.CrawlerManager.DEFAULT.DEFAULT_USER_AGENT_ST
 public class CrawlerManager {
     public static class DEFAULT {
         public static final String DEFAULT_INTERVAL = new DateCategoriser(null).extractIntervals()[0];
+        // Zero for a single interval; otherwise the interval is split into buckets of this size e.g. a week.
+        public static final Period DEFAULT_BUCKET_SIZE = Period.ZERO;
         public static final String DEFAULT_USER_AGENT_STRING = "crawler4j (https://github.com/yasserg/crawler4j/)";
         // user.home returns the user's home directory on Windows using backslashes - to maintain pattern, \\ are used
         // in the appending string.
         public static final String DEFAULT_CRAWL_STORAGE_FOLDER = System.getProperty("user.home") +"\\data\\crawler4j";
+        public static final String DEFAULT_REPLAY_CORPUS_DIR = ReplayServer.DEFAULT_CORPUS_DIR;
+        // Kept in the crawl storage folder, next to the frontier, across crawls.
+        public static final String DEFAULT_ANALYSIS_CACHE_FILE_NAME = "analysis.cache";
+        public static final String DEFAULT_REVALIDATION_STORE_FILE_NAME = "revalidation.store";
         
         public static final int DEFAULT_NUMBER_OF_CRAWLERS = 8;
+        // Analysis is CPU-bound thus one analyser per core.
+        public static final int DEFAULT_NUMBER_OF_ANALYSERS = Runtime.getRuntime().availableProcessors();
+        public static final int DEFAULT_ANALYSIS_QUEUE_CAPACITY = 32;
         public static final int DEFAULT_MAX_DEPTH_OF_CRAWLING = 50;
         public static final int DEFAULT_MAX_CRAWLED_PAGES = 1000;
+        // The analysed pages and crawled bytes are unlimited by default; only the crawled pages are limited.
+        public static final int DEFAULT_MAX_ANALYSED_PAGES = 0;
+        public static final long DEFAULT_MAX_CRAWLED_BYTES = 0;
         public static final int DEFAULT_POLITENESS_DELAY = 200;
+        // Longer urls and urls with more query parameters are mostly session ids, calendars and search pages.
+        public static final int DEFAULT_MAX_URL_LENGTH = 1024;
+        public static final int DEFAULT_MAX_QUERY_PARAMETERS = 8;
+        public static final int DEFAULT_SENTIMENT_WINDOW = SentientAnalyser.DEFAULT_SENTIMENT_WINDOW;
+        // Replayed pages are served without delay and at unlimited bandwidth by default.
+        public static final int DEFAULT_REPLAY_LATENCY = 0;
+        public static final int DEFAULT_REPLAY_BANDWIDTH = 0;
+        // Milliseconds between snapshots of the results sent to the result listeners during the crawl.
+        public static final int DEFAULT_SNAPSHOT_INTERVAL = 2000;
+        public static final int DEFAULT_ANALYSIS_CACHE_CAPACITY = AnalysisCache.DEFAULT_CAPACITY;
+        public static final long DEFAULT_ANALYSIS_CACHE_TIME_TO_LIVE = AnalysisCache.DEFAULT_TIME_TO_LIVE;
         
         public static final boolean DEFAULT_INCLUDE_HTTPS_PAGES = true;
         public static final boolean DEFAULT_RESUMABLE_CRAWLING = false;
+        // The politeness delay is applied per host, adapting to each host, rather than between any two fetches.
+        public static final boolean DEFAULT_ADAPTIVE_POLITENESS = true;
+        // Near-duplicate articles, e.g. syndicated newswire stories, are skipped rather than scored again.
+        public static final boolean DEFAULT_DUPLICATE_DETECTION = true;
+        // Analyses are cached on disk, thus articles crawled again by later crawls are not analysed again.
+        public static final boolean DEFAULT_ANALYSIS_CACHE = true;
+        // Pages analysed by earlier crawls are revalidated rather than downloaded again; requires the analysis cache.
+        public static final boolean DEFAULT_REVALIDATION = true;
+        public static final boolean DEFAULT_ENTITY_SCOPED_SENTIMENT = SentientAnalyser.DEFAULT_ENTITY_SCOPED_SENTIMENT;
         // IMPORTANT: enable/disable in-testing feature.
         public static final boolean DEFAULT_TEST = false;
         public static final String DEFAULT_TEST_MODE = MODE.TEST_MODE_COMPLEX;
@@ -51,6 +122,10 @@ public class CrawlerManager {
      */
     public static class MODE {
         public static final String TEST_MODE_COMPLEX = "TEST_MODE_COMPLEX";
+        /**
+         * Crawls a recorded corpus served by a local {@link ReplayServer}; does not require network access.
+         */
+        public static final String TEST_MODE_REPLAY = "TEST_MODE_REPLAY";
     }
     
     private static final Logger LOGGER = Logger.getLogger(CrawlerManager.class.getName());
@@ -58,6 +133,25 @@ public class CrawlerManager {
     private final CrawlConfig crawlConfig;
     
     private CrawlController controller;
+    private AnalysisExecutor analysisExecutor;
+    private ReplayServer replayServer;
+    /**
+     * Opened by the first crawl and kept open for later crawls; reopened if its settings change.
+     */
+    private AnalysisCache analysisCache;
+    private Path analysisCacheFile;
+    /**
+     * Loaded by the first crawl and saved once each crawl is over.
+     */
+    private RevalidationStore revalidationStore;
+    private Path revalidationStoreFile;
+    private final ScheduledExecutorService snapshotPublisher = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "Result snapshot publisher");
+                thread.setDaemon(true);
+                return thread;
+            });
+    private SnapshotTask snapshotTask;
     private final CrawlerFactory crawlerFactory;
     private final Configs configs;
     
@@ -66,16 +160,39 @@ public class CrawlerManager {
     private String testMode;
     
     private String interval;
+    private Period bucketSize;
     private String userAgentString;
     private String crawlStorageFolder;
+    private String replayCorpusDir;
     
     private int numberOfCrawlers;
+    private int numberOfAnalysers;
+    private int analysisQueueCapacity;
     private int maxDepthOfCrawling;
     private int maxCrawledPages;
+    private int maxAnalysedPages;
     private int politenessDelay;
+    private int maxUrlLength;
+    private int maxQueryParameters;
+    private int sentimentWindow;
+    private int replayLatency;
+    private int replayBandwidth;
+    private int snapshotInterval;
+    private int analysisCacheCapacity;
+    private long maxCrawledBytes;
+    private long analysisCacheTimeToLive;
+    
+    private final List<String> excludedExtensions = new ArrayList<>(UrlFilter.DEFAULT_EXCLUDED_EXTENSIONS);
+    private final Set<String> allowedHosts = new HashSet<>();
+    private final Set<String> deniedHosts = new HashSet<>();
     
     private boolean includeHttpsPages;
     private boolean resumableCrawling;
+    private boolean adaptivePoliteness;
+    private boolean duplicateDetection;
+    private boolean analysisCacheEnabled;
+    private boolean revalidation;
+    private boolean entityScopedSentiment;
     
     public CrawlerManager(CrawlerTerminationListener terminationListener) {
         crawlConfig = new CrawlConfig();
@@ -83,16 +200,35 @@ public class CrawlerManager {
         crawlerFactory = new CrawlerFactory(terminationListener, configs);
         
         interval = DEFAULT_INTERVAL;
+        bucketSize = DEFAULT_BUCKET_SIZE;
         userAgentString = DEFAULT_USER_AGENT_STRING;
         crawlStorageFolder = DEFAULT_CRAWL_STORAGE_FOLDER;
+        replayCorpusDir = DEFAULT_REPLAY_CORPUS_DIR;
         
         numberOfCrawlers = DEFAULT_NUMBER_OF_CRAWLERS;
+        numberOfAnalysers = DEFAULT_NUMBER_OF_ANALYSERS;
+        analysisQueueCapacity = DEFAULT_ANALYSIS_QUEUE_CAPACITY;
         maxDepthOfCrawling = DEFAULT_MAX_DEPTH_OF_CRAWLING;
         maxCrawledPages = DEFAULT_MAX_CRAWLED_PAGES;
+        maxAnalysedPages = DEFAULT_MAX_ANALYSED_PAGES;
+        maxCrawledBytes = DEFAULT_MAX_CRAWLED_BYTES;
         politenessDelay = DEFAULT_POLITENESS_DELAY;
+        maxUrlLength = DEFAULT_MAX_URL_LENGTH;
+        maxQueryParameters = DEFAULT_MAX_QUERY_PARAMETERS;
+        sentimentWindow = DEFAULT_SENTIMENT_WINDOW;
+        snapshotInterval = DEFAULT_SNAPSHOT_INTERVAL;
+        analysisCacheCapacity = DEFAULT_ANALYSIS_CACHE_CAPACITY;
+        analysisCacheTimeToLive = DEFAULT_ANALYSIS_CACHE_TIME_TO_LIVE;
+        replayLatency = DEFAULT_REPLAY_LATENCY;
+        replayBandwidth = DEFAULT_REPLAY_BANDWIDTH;
         
         includeHttpsPages = DEFAULT_INCLUDE_HTTPS_PAGES;
         resumableCrawling = DEFAULT_RESUMABLE_CRAWLING;
+        adaptivePoliteness = DEFAULT_ADAPTIVE_POLITENESS;
+        duplicateDetection = DEFAULT_DUPLICATE_DETECTION;
+        analysisCacheEnabled = DEFAULT_ANALYSIS_CACHE;
+        revalidation = DEFAULT_REVALIDATION;
+        entityScopedSentiment = DEFAULT_ENTITY_SCOPED_SENTIMENT;
         
         test = DEFAULT_TEST;
         testMode = DEFAULT_TEST_MODE;
@@ -104,7 +240,49 @@ public class CrawlerManager {
                 endDate = LocalDate.parse(intervalParts[1].trim());
         configs.setStartDate(startDate);
         configs.setEndDate(endDate);
+        // A bucketed crawl covers every bucket of the interval at once, thus each page is fetched and analysed once
+        // rather than once per bucket.
+        DateCategoriser dateCategoriser = bucketSize.isZero() ? null :
+                new DateCategoriser(startDate, endDate, bucketSize);
+        configs.setDateCategoriser(dateCategoriser);
         configs.setMaxCrawledPages(maxCrawledPages);
+        // The budget is shared by the crawlers thus limits the crawl as a whole, rather than each crawler.
+        configs.setCrawlBudget(new CrawlBudget(maxCrawledPages, maxAnalysedPages, maxCrawledBytes));
+        // Yields of the hosts are learnt per crawl.
+        configs.setUrlPrioritiser(new UrlPrioritiser());
+        // Articles seen are per crawl.
+        configs.setDuplicateDetector(duplicateDetection ? new DuplicateDetector() : null);
+        AnalysisCache cache = analysisCacheEnabled ? openAnalysisCache() : null;
+        configs.setAnalysisCache(cache);
+        // A page which has not changed is only worth revalidating if its analysis can be reused.
+        RevalidationStore store = revalidation && cache != null ? openRevalidationStore() : null;
+        configs.setRevalidationStore(store);
+        Predicate<RevalidationStore.Entry> revalidatable = entry -> entry.getSignature() ==
+                AnalysisCache.signatureOf(SOIRegistry.getInstance().getStockMatcher().getSignature()) &&
+                cache.contains(entry.getAnalysisKey(), startDate, endDate);
+        configs.setUrlFilter(new UrlFilter(excludedExtensions, allowedHosts, deniedHosts, maxUrlLength,
+                maxQueryParameters));
+        configs.setCrawlMetrics(new CrawlMetrics());
+        // Results are per crawl.
+        configs.setResultAggregator(new ResultAggregator(dateCategoriser));
+        // The crawlers share the matcher of the stocks of interest rather than each compiling its own; edits to the
+        // stocks of interest during the crawl are picked up by the crawlers as the registry publishes new matchers.
+        configs.setStockMatcherSource(SOIRegistry.getInstance()::getStockMatcher);
+        // Reject counts are per crawl.
+        SentientAnalyser.resetRejectCounts();
+        // Entity-scoped sentiment only parses the sentences mentioning the stock, within the sentiment window.
+        SentientAnalyser.setEntityScopedSentiment(entityScopedSentiment);
+        SentientAnalyser.setSentimentWindow(sentimentWindow);
+        
+        // Crawlers hand articles over to a separate, bounded pool of analysers.
+        if (analysisExecutor != null) {
+            analysisExecutor.shutdown();
+        }
+        analysisExecutor = new AnalysisExecutor(numberOfAnalysers, analysisQueueCapacity);
+        configs.setAnalysisExecutor(analysisExecutor);
+        // Each analyser checks out its own set of pipelines, thus no more sets are needed than analysers.
+        SentientAnalyser.getPipelinePool().setSize(numberOfAnalysers);
+        SentientAnalyser.getPipelinePool().resetMetrics();
         
         crawlConfig.setCrawlStorageFolder(crawlStorageFolder);
         // Max depth of crawling is set to infinite depth by default
@@ -113,7 +291,9 @@ public class CrawlerManager {
         // Including https pages is set to false by default.
         crawlConfig.setIncludeHttpsPages(includeHttpsPages);
         // Politeness delay is set to 200 milliseconds by default.
-        crawlConfig.setPolitenessDelay(politenessDelay);
+        // NOTE: with adaptive politeness, the page fetcher applies the delay per host, thus crawler4j must not apply
+        // it between any two fetches.
+        crawlConfig.setPolitenessDelay(adaptivePoliteness ? 0 : politenessDelay);
         // Resumable crawling continue crawling in the event of crawler process timing out.
         // Resumable crawling is set to false by default.
         // since would not have to delete the data dump for fresh run of program.
@@ -125,11 +305,19 @@ public class CrawlerManager {
         /*
          * Instantiate the controller for this crawl.
          */
-        PageFetcher pageFetcher = new PageFetcher(crawlConfig);
+        // The robots.txt files are fetched by the same fetcher, thus their Crawl-delay is picked up by it.
+        AdaptivePageFetcher adaptivePageFetcher = adaptivePoliteness ?
+                new AdaptivePageFetcher(crawlConfig, politenessDelay, store, revalidatable) : null;
+        PageFetcher pageFetcher = adaptivePageFetcher != null ? adaptivePageFetcher :
+                new RevalidatingPageFetcher(crawlConfig, store, revalidatable);
         RobotstxtConfig robotstxtConfig = new RobotstxtConfig();
         RobotstxtServer robotstxtServer = new RobotstxtServer(robotstxtConfig, pageFetcher);
         try {
-            controller = new CrawlController(crawlConfig, pageFetcher, robotstxtServer);
+            // With adaptive politeness, the crawlers are handed urls of the hosts which are ready to be fetched from,
+            // rather than in order, thus they do not wait for slow or backed off hosts.
+            controller = adaptivePageFetcher != null ?
+                    new HostFrontier.Controller(crawlConfig, adaptivePageFetcher, robotstxtServer) :
+                    new CrawlController(crawlConfig, pageFetcher, robotstxtServer);
         } catch (Exception e) {
             LOGGER.fatal("The crawlers configuration is incorrect. The problem may be due to the data dump location.");
             e.printStackTrace();
@@ -143,6 +331,23 @@ public class CrawlerManager {
                     LOGGER.debug("Adding " + SeedUrlRegistry.TEST_MODE_COMPLEX_URL + " as a seed url.");
                     controller.addSeed(SeedUrlRegistry.TEST_MODE_COMPLEX_URL);
                     break;
+                case MODE.TEST_MODE_REPLAY:
+                    if (replayServer != null) {
+                        replayServer.stop();
+                    }
+                    replayServer = new ReplayServer(replayCorpusDir);
+                    replayServer.setLatency(replayLatency);
+                    replayServer.setBandwidth(replayBandwidth);
+                    try {
+                        replayServer.start();
+                    } catch (IOException e) {
+                        LOGGER.fatal("The replay server failed to start. The problem may be due to the corpus location.");
+                        e.printStackTrace();
+                        return;
+                    }
+                    LOGGER.debug("Adding " + replayServer.getSeedUrl() + " as a seed url.");
+                    controller.addSeed(replayServer.getSeedUrl());
+                    break;
                 default:
                     /*
                      * For each crawl, you need to add some seed urls. These are the first
@@ -193,20 +398,181 @@ public class CrawlerManager {
         LOGGER.debug("#startNonBlockingCrawl. " + "\n" +
                 "Configs: " + "\n" +
                 "process interval: " + interval + "\n" +
+                " bucket size: " + (dateCategoriser != null ? bucketSize + " buckets: " +
+                dateCategoriser.getBucketCount() : "single interval") + "\n" +
                 " user agent name: " + userAgentString + "\n" +
                 " data dump: " + crawlStorageFolder + "\n" +
                 " number of crawlers: " + numberOfCrawlers + "\n" +
+                " number of analysers: " + numberOfAnalysers + "\n" +
+                " analysis queue capacity: " + analysisQueueCapacity + "\n" +
                 " max depth of crawling: " + maxDepthOfCrawling + "\n" +
+                " max crawled pages: " + maxCrawledPages + "\n" +
+                " max analysed pages: " + maxAnalysedPages + "\n" +
+                " max crawled bytes: " + maxCrawledBytes + "\n" +
                 " politeness delay (ms): " + politenessDelay + "\n" +
+                " adaptive politeness: " + adaptivePoliteness + "\n" +
+                " max url length: " + maxUrlLength + "\n" +
+                " max query parameters: " + maxQueryParameters + "\n" +
+                " allowed hosts: " + (allowedHosts.isEmpty() ? "any" : allowedHosts) + "\n" +
+                " denied hosts: " + deniedHosts + "\n" +
                 " include HTTPs pages: " + includeHttpsPages + "\n" +
                 " resumable crawling: " + resumableCrawling + "\n" +
+                " entity-scoped sentiment: " + entityScopedSentiment + "\n" +
+                " duplicate detection: " + duplicateDetection + "\n" +
+                " analysis cache: " + (analysisCacheEnabled ? analysisCacheFile : "disabled") + "\n" +
+                " revalidation store: " + (store != null ? revalidationStoreFile : "disabled") + "\n" +
+                " sentiment window: " + sentimentWindow + "\n" +
                 " enable test mode: " + test + "\n" +
-                " test mode: " + testMode + "\n"
+                " test mode: " + testMode + "\n" +
+                " replay corpus: " + replayCorpusDir + "\n" +
+                " replay latency (ms): " + replayLatency + "\n" +
+                " replay bandwidth (bytes/s): " + replayBandwidth + "\n" +
+                " snapshot interval (ms): " + snapshotInterval + "\n"
         );
         
         // A crawler factory is required to feed data into the crawler.
         // Runs the crawlers in a non-blocking thread.
         controller.startNonBlocking(crawlerFactory, numberOfCrawlers);
+        scheduleSnapshots();
+    }
+    
+    /**
+     * @return the cache of the analyses in the crawl storage folder; null if it fails to open, in which case articles
+     * are always analysed.
+     */
+    private synchronized AnalysisCache openAnalysisCache() {
+        Path file = Paths.get(crawlStorageFolder, DEFAULT_ANALYSIS_CACHE_FILE_NAME);
+        if (analysisCache != null && file.equals(analysisCacheFile)) {
+            return analysisCache;
+        }
+        closeAnalysisCache();
+        try {
+            analysisCache = new AnalysisCache(file, analysisCacheCapacity, analysisCacheTimeToLive);
+            analysisCacheFile = file;
+        } catch (IOException e) {
+            LOGGER.error("#openAnalysisCache: failed to open the analysis cache: " + file);
+            e.printStackTrace();
+        }
+        return analysisCache;
+    }
+    
+    /**
+     * @return the validators of the pages of earlier crawls, from the crawl storage folder.
+     */
+    private synchronized RevalidationStore openRevalidationStore() {
+        Path file = Paths.get(crawlStorageFolder, DEFAULT_REVALIDATION_STORE_FILE_NAME);
+        if (revalidationStore == null || !file.equals(revalidationStoreFile)) {
+            revalidationStore = new RevalidationStore(file, RevalidationStore.DEFAULT_CAPACITY);
+            revalidationStoreFile = file;
+        }
+        return revalidationStore;
+    }
+    
+    /**
+     * Writes the caches of the crawl through to their files, for later crawls.
+     * <p>
+     * IMPORTANT: synchronized, as both the snapshot publisher and #stopCrawl save the caches once a crawl is over,
+     * and the analysis cache may be closed by a setter meanwhile.
+     */
+    private synchronized void saveCaches() {
+        if (analysisCache != null) {
+            analysisCache.flush();
+        }
+        if (revalidationStore != null) {
+            revalidationStore.save();
+        }
+    }
+    
+    private synchronized void closeAnalysisCache() {
+        if (analysisCache == null) {
+            return;
+        }
+        try {
+            analysisCache.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        analysisCache = null;
+        analysisCacheFile = null;
+    }
+    
+    /**
+     * Sends snapshots of the results of the current crawl to the result listeners, every snapshot interval while
+     * there are new results and a final time once the crawl is over.
+     */
+    private void scheduleSnapshots() {
+        if (snapshotTask != null) {
+            snapshotTask.cancel();
+        }
+        snapshotTask = new SnapshotTask(controller, analysisExecutor, configs.getResultAggregator(),
+                configs.getCrawlMetrics(), configs.getStartDate(), configs.getEndDate());
+        snapshotTask.future = snapshotPublisher.scheduleWithFixedDelay(snapshotTask, snapshotInterval,
+                snapshotInterval, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Publishes the snapshots of a single crawl; the settings of the crawl are captured so that a new crawl does
+     * not change them.
+     */
+    private class SnapshotTask implements Runnable {
+        private final CrawlController crawlController;
+        private final AnalysisExecutor analysisExecutor;
+        private final ResultAggregator resultAggregator;
+        private final CrawlMetrics crawlMetrics;
+        private final LocalDate startDate,
+                endDate;
+        private volatile ScheduledFuture<?> future;
+        // Only accessed by the snapshot publisher thread.
+        private long publishedResults;
+        
+        SnapshotTask(CrawlController crawlController, AnalysisExecutor analysisExecutor,
+                     ResultAggregator resultAggregator, CrawlMetrics crawlMetrics, LocalDate startDate,
+                     LocalDate endDate) {
+            this.crawlController = crawlController;
+            this.analysisExecutor = analysisExecutor;
+            this.resultAggregator = resultAggregator;
+            this.crawlMetrics = crawlMetrics;
+            this.startDate = startDate;
+            this.endDate = endDate;
+        }
+        
+        @Override
+        public void run() {
+            // NOTE: the crawl is finished once every crawler has waited for its analyses, thus the final snapshot
+            // holds every score.
+            boolean finished = crawlController.isFinished();
+            long recordedResults = crawlMetrics.getResultsRecorded();
+            if (!finished && recordedResults == publishedResults) {
+                return;
+            }
+            publishedResults = recordedResults;
+            
+            List<Stock> results = Collections.unmodifiableList(resultAggregator.snapshot(startDate, endDate));
+            LOGGER.debug("#snapshot: stocks: " + results.size() + " results: " + recordedResults +
+                    " finished: " + finished);
+            for (ResultListener listener : configs.getResultListeners()) {
+                try {
+                    listener.onSnapshot(results, finished);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+            if (finished) {
+                cancel();
+                // Every analysis of the crawl is done by then, thus the analysers are let go rather than left idle
+                // until the next crawl.
+                analysisExecutor.shutdown();
+                // The fetcher is shared by the crawlers, thus its counts are logged once per crawl.
+                LOGGER.debug("#snapshot: page fetcher: " + crawlController.getPageFetcher());
+                saveCaches();
+            }
+        }
+        
+        void cancel() {
+            if (future != null) {
+                future.cancel(false);
+            }
+        }
     }
     
     public void stopCrawl() {
@@ -217,6 +583,57 @@ public class CrawlerManager {
         // Shuts down the crawlers.
         controller.shutdown();
         controller.waitUntilFinish();
+        
+        if (analysisExecutor != null) {
+            analysisExecutor.shutdown();
+        }
+        
+        if (replayServer != null) {
+            replayServer.stop();
+            replayServer = null;
+        }
+        
+        saveCaches();
+    }
+    
+    /**
+     * @return metrics of the current or last crawl.
+     */
+    public CrawlMetrics getCrawlMetrics() {
+        return configs.getCrawlMetrics();
+    }
+    
+    /**
+     * @return budget of the current or last crawl.
+     */
+    public CrawlBudget getCrawlBudget() {
+        return configs.getCrawlBudget();
+    }
+    
+    /**
+     * Streams the results of the crawls to the listener, as they are produced.
+     */
+    public void addResultListener(ResultListener listener) {
+        configs.getResultListeners().add(listener);
+    }
+    
+    public void removeResultListener(ResultListener listener) {
+        configs.getResultListeners().remove(listener);
+    }
+    
+    /**
+     * @return results of the current or last crawl; a snapshot may be taken at any time.
+     */
+    public ResultAggregator getResultAggregator() {
+        return configs.getResultAggregator();
+    }
+    
+    /**
+     * @return results of the current or last crawl, marked with the dates of its interval; or with the dates of each
+     * bucket, per bucket, if the crawl is bucketed.
+     */
+    public List<Stock> getResults() {
+        return configs.getResultAggregator().snapshot(configs.getStartDate(), configs.getEndDate());
     }
     
     public void setSeedUrlOption(SeedUrl.Option seedUrlOption) {
@@ -235,6 +652,16 @@ public class CrawlerManager {
         this.interval = interval;
     }
     
+    /**
+     * @param bucketSize size of the buckets the interval is split into, e.g. {@link Period#ofWeeks} 1, so that a
+     *                   single crawl yields the results of every bucket; zero for a single interval.
+     */
+    public void setBucketSize(Period bucketSize) {
+        if (bucketSize != null && !bucketSize.isNegative()) {
+            this.bucketSize = bucketSize;
+        }
+    }
+    
     public String getUserAgentString() {
         return userAgentString;
     }
@@ -257,6 +684,21 @@ public class CrawlerManager {
         }
     }
     
+    public void setNumberOfAnalysers(int numberOfAnalysers) {
+        if (numberOfAnalysers > 0) {
+            this.numberOfAnalysers = numberOfAnalysers;
+        }
+    }
+    
+    /**
+     * @param analysisQueueCapacity number of articles which can wait for an analyser before crawlers are blocked.
+     */
+    public void setAnalysisQueueCapacity(int analysisQueueCapacity) {
+        if (analysisQueueCapacity >= 0) {
+            this.analysisQueueCapacity = analysisQueueCapacity;
+        }
+    }
+    
     public void setMaxDepthOfCrawling(int maxDepthOfCrawling) {
         this.maxDepthOfCrawling = maxDepthOfCrawling;
     }
@@ -265,10 +707,78 @@ public class CrawlerManager {
         this.maxCrawledPages = maxCrawledPages;
     }
     
+    /**
+     * @param maxAnalysedPages pages mentioning a stock of interest to analyse before the crawl stops; 0 for unlimited.
+     */
+    public void setMaxAnalysedPages(int maxAnalysedPages) {
+        if (maxAnalysedPages >= 0) {
+            this.maxAnalysedPages = maxAnalysedPages;
+        }
+    }
+    
+    /**
+     * @param maxCrawledBytes bytes to fetch before the crawl stops; 0 for unlimited.
+     */
+    public void setMaxCrawledBytes(long maxCrawledBytes) {
+        if (maxCrawledBytes >= 0) {
+            this.maxCrawledBytes = maxCrawledBytes;
+        }
+    }
+    
     public void setPolitenessDelay(int politenessDelay) {
         this.politenessDelay = politenessDelay;
     }
     
+    /**
+     * @param maxUrlLength length of the longest url to crawl; 0 for unlimited.
+     */
+    public void setMaxUrlLength(int maxUrlLength) {
+        if (maxUrlLength >= 0) {
+            this.maxUrlLength = maxUrlLength;
+        }
+    }
+    
+    /**
+     * @param maxQueryParameters number of query parameters of the url to crawl; 0 for unlimited.
+     */
+    public void setMaxQueryParameters(int maxQueryParameters) {
+        if (maxQueryParameters >= 0) {
+            this.maxQueryParameters = maxQueryParameters;
+        }
+    }
+    
+    /**
+     * @param excludedExtensions extensions of the urls not to crawl, e.g. "pdf"; replaces the default extensions.
+     */
+    public void setExcludedExtensions(Collection<String> excludedExtensions) {
+        this.excludedExtensions.clear();
+        this.excludedExtensions.addAll(excludedExtensions);
+    }
+    
+    /**
+     * @param allowedHosts hosts to crawl, along with their sub-domains; empty to crawl any host.
+     */
+    public void setAllowedHosts(Collection<String> allowedHosts) {
+        this.allowedHosts.clear();
+        this.allowedHosts.addAll(allowedHosts);
+    }
+    
+    /**
+     * @param deniedHosts hosts not to crawl, along with their sub-domains.
+     */
+    public void setDeniedHosts(Collection<String> deniedHosts) {
+        this.deniedHosts.clear();
+        this.deniedHosts.addAll(deniedHosts);
+    }
+    
+    /**
+     * @param adaptivePoliteness true to apply the politeness delay per host, adapting it to the latency, errors and
+     *                           Crawl-delay of each host; false to apply it between any two fetches.
+     */
+    public void setAdaptivePoliteness(boolean adaptivePoliteness) {
+        this.adaptivePoliteness = adaptivePoliteness;
+    }
+    
     public void setIncludeHttpsPages(boolean includeHttpsPages) {
         this.includeHttpsPages = includeHttpsPages;
     }
@@ -276,4 +786,88 @@ public class CrawlerManager {
     public void setResumableCrawling(boolean resumableCrawling) {
         this.resumableCrawling = resumableCrawling;
     }
+    
+    public void setEntityScopedSentiment(boolean entityScopedSentiment) {
+        this.entityScopedSentiment = entityScopedSentiment;
+    }
+    
+    /**
+     * @param duplicateDetection true to skip articles which are near-duplicates of articles seen before in the crawl.
+     */
+    public void setDuplicateDetection(boolean duplicateDetection) {
+        this.duplicateDetection = duplicateDetection;
+    }
+    
+    /**
+     * @param analysisCacheEnabled true to reuse the analyses of articles crawled before, by this or earlier crawls.
+     */
+    public void setAnalysisCacheEnabled(boolean analysisCacheEnabled) {
+        this.analysisCacheEnabled = analysisCacheEnabled;
+    }
+    
+    /**
+     * @param revalidation true to send conditional requests for the pages analysed by earlier crawls, so that
+     *                     unchanged pages are neither downloaded nor analysed again; requires the analysis cache.
+     */
+    public void setRevalidation(boolean revalidation) {
+        this.revalidation = revalidation;
+    }
+    
+    /**
+     * @param analysisCacheCapacity number of analyses the cache holds; takes effect once the cache is reopened.
+     */
+    public void setAnalysisCacheCapacity(int analysisCacheCapacity) {
+        if (analysisCacheCapacity > 0 && analysisCacheCapacity <= AnalysisCache.MAX_CAPACITY &&
+                analysisCacheCapacity != this.analysisCacheCapacity) {
+            this.analysisCacheCapacity = analysisCacheCapacity;
+            closeAnalysisCache();
+        }
+    }
+    
+    /**
+     * @param analysisCacheTimeToLive milliseconds an analysis is reused for; 0 for unlimited.
+     */
+    public void setAnalysisCacheTimeToLive(long analysisCacheTimeToLive) {
+        if (analysisCacheTimeToLive >= 0 && analysisCacheTimeToLive != this.analysisCacheTimeToLive) {
+            this.analysisCacheTimeToLive = analysisCacheTimeToLive;
+            closeAnalysisCache();
+        }
+    }
+    
+    public void setSentimentWindow(int sentimentWindow) {
+        if (sentimentWindow >= 0) {
+            this.sentimentWindow = sentimentWindow;
+        }
+    }
+    
+    public void setReplayCorpusDir(String replayCorpusDir) {
+        this.replayCorpusDir = replayCorpusDir;
+    }
+    
+    /**
+     * @param replayLatency milliseconds the replay server waits before responding to each request.
+     */
+    public void setReplayLatency(int replayLatency) {
+        if (replayLatency >= 0) {
+            this.replayLatency = replayLatency;
+        }
+    }
+    
+    /**
+     * @param replayBandwidth bytes per second the replay server writes each response at; 0 for unlimited.
+     */
+    public void setReplayBandwidth(int replayBandwidth) {
+        if (replayBandwidth >= 0) {
+            this.replayBandwidth = replayBandwidth;
+        }
+    }
+    
+    /**
+     * @param snapshotInterval milliseconds between snapshots of the results sent to the result listeners.
+     */
+    public void setSnapshotInterval(int snapshotInterval) {
+        if (snapshotInterval > 0) {
+            this.snapshotInterval = snapshotInterval;
+        }
+    }
 }
\ No newline at end of file
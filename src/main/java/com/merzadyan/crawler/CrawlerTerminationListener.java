@@ -2,12 +2,16 @@ package com.merzadyan.crawler;
 
 import com.merzadyan.stock.Stock;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.List;
 
 /**
  * Used to signal the termination of a crawler's life.
  */
 public interface CrawlerTerminationListener {
-    void onTermination(HashMap<Stock, ArrayList<Integer>> soiScoreMap);
+    /**
+     * @param results stocks of interest found by all the crawlers of the crawl so far, each with its histogram of
+     *                sentiment scores. Scores of crawlers which are still terminating may be missing; once every
+     *                crawler has terminated, see {@link CrawlerManager#getResults()} for the complete results.
+     */
+    void onTermination(List<Stock> results);
 }
\ No newline at end of file
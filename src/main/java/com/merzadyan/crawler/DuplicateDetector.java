@@ -0,0 +1,252 @@
+package com.merzadyan.crawler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Detects near-duplicate articles, e.g. the same newswire story syndicated by several sites under different urls, so
+ * that each story is analysed and scored once. Shared by the crawlers of a crawl.
+ * <p>
+ * Each text is fingerprinted with a 64-bit SimHash of its shingles of {@link #SHINGLE_SIZE} words: texts which share
+ * most of their shingles have fingerprints which differ in few bits. A text is a near-duplicate of one seen before if
+ * their fingerprints differ in at most {@link #MAX_DISTANCE} bits, which allows for the boilerplate of the sites
+ * around the story. The fingerprints are indexed by each of their {@link #BANDS} bands of bits; as two fingerprints
+ * within the distance must share at least one band, only the fingerprints sharing a band are compared.
+ * <p>
+ * A text is checked before it is analysed, but its fingerprint is only recorded once its analysis is accepted, so
+ * that a copy rejected e.g. for its date does not keep a later copy from being scored. The index holds at most its
+ * capacity of fingerprints; once full, later texts are still checked against it but no longer recorded.
+ */
+public class DuplicateDetector {
+    public static final int SHINGLE_SIZE = 3;
+    public static final int MAX_DISTANCE = 6;
+    /**
+     * Must be greater than {@link #MAX_DISTANCE} so that near-duplicates share a band; the highest bit is left out.
+     */
+    private static final int BANDS = MAX_DISTANCE + 1;
+    private static final int BAND_BITS = 64 / BANDS;
+    /**
+     * Texts of fewer words are too short to fingerprint reliably thus are never duplicates.
+     */
+    private static final int MIN_WORDS = 20;
+    /**
+     * Most fingerprints recorded by default; each takes a slot in every band, thus some 56 bytes and more.
+     */
+    public static final int DEFAULT_CAPACITY = 100000;
+    
+    /**
+     * Fingerprints sharing a band; grown by doubling, thus recording a fingerprint does not copy the bucket each time.
+     */
+    private static class Bucket {
+        private long[] fingerprints = new long[1];
+        private int size;
+        
+        void add(long fingerprint) {
+            if (size == fingerprints.length) {
+                fingerprints = Arrays.copyOf(fingerprints, size * 2);
+            }
+            fingerprints[size++] = fingerprint;
+        }
+    }
+    
+    /**
+     * Fingerprints by band; keyed by the index of the band and its bits. Guarded by lock: checks share it whereas
+     * recording a fingerprint takes it exclusively.
+     */
+    private final Map<Integer, Bucket> index = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final int capacity;
+    private int fingerprintCount;
+    
+    private final LongAdder duplicateCount = new LongAdder();
+    private final LongAdder uniqueCount = new LongAdder();
+    
+    public DuplicateDetector() {
+        this(DEFAULT_CAPACITY);
+    }
+    
+    /**
+     * @param capacity most fingerprints recorded.
+     */
+    public DuplicateDetector(int capacity) {
+        this.capacity = capacity;
+    }
+    
+    /**
+     * Checks the text, fingerprinted with {@link #fingerprintOf}, against the texts recorded so far.
+     *
+     * @return true if the text is a near-duplicate of a recorded text; false if the fingerprint is 0.
+     */
+    public boolean isDuplicate(long fingerprint) {
+        boolean duplicate = false;
+        if (fingerprint != 0) {
+            lock.readLock().lock();
+            try {
+                duplicate = contains(fingerprint);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+        if (duplicate) {
+            duplicateCount.increment();
+        } else {
+            uniqueCount.increment();
+        }
+        return duplicate;
+    }
+    
+    /**
+     * Records the text, once its analysis is accepted, unless a near-duplicate of it has been recorded since it was
+     * checked, i.e. another copy was analysed at the same time.
+     *
+     * @return false if a near-duplicate has been recorded since, thus the text is not to be scored.
+     */
+    public boolean record(long fingerprint) {
+        if (fingerprint == 0) {
+            return true;
+        }
+        // NOTE: the lookup and the insertion are atomic so that two copies analysed at once are not both scored.
+        lock.writeLock().lock();
+        try {
+            if (contains(fingerprint)) {
+                uniqueCount.decrement();
+                duplicateCount.increment();
+                return false;
+            }
+            if (fingerprintCount < capacity) {
+                add(fingerprint);
+            }
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    private boolean contains(long fingerprint) {
+        for (int band = 0; band < BANDS; band++) {
+            Bucket bucket = index.get(bandKeyOf(fingerprint, band));
+            if (bucket == null) {
+                continue;
+            }
+            for (int i = 0; i < bucket.size; i++) {
+                if (distance(fingerprint, bucket.fingerprints[i]) <= MAX_DISTANCE) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private void add(long fingerprint) {
+        for (int band = 0; band < BANDS; band++) {
+            index.computeIfAbsent(bandKeyOf(fingerprint, band), key -> new Bucket()).add(fingerprint);
+        }
+        fingerprintCount++;
+    }
+    
+    private static int bandKeyOf(long fingerprint, int band) {
+        int bits = (int) (fingerprint >>> (band * BAND_BITS)) & ((1 << BAND_BITS) - 1);
+        return band << BAND_BITS | bits;
+    }
+    
+    /**
+     * @return number of bits in which the fingerprints differ.
+     */
+    public static int distance(long fingerprint, long otherFingerprint) {
+        return Long.bitCount(fingerprint ^ otherFingerprint);
+    }
+    
+    /**
+     * Words are runs of letters and digits, ignoring case; the text is scanned in place.
+     *
+     * @return SimHash of the shingles of the text; 0 if the text has fewer than {@link #MIN_WORDS} words.
+     */
+    public static long fingerprintOf(CharSequence text) {
+        int[] weights = new int[64];
+        // Hashes of the last words, as a ring.
+        long[] words = new long[SHINGLE_SIZE];
+        int wordCount = 0;
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            // FNV-1a of the lower case word.
+            long word = 0xcbf29ce484222325L;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                word ^= Character.toLowerCase(text.charAt(i));
+                word *= 0x100000001b3L;
+                i++;
+            }
+            words[wordCount % SHINGLE_SIZE] = word;
+            wordCount++;
+            if (wordCount < SHINGLE_SIZE) {
+                continue;
+            }
+            
+            // The words of the shingle are combined in order.
+            long shingle = 0;
+            for (int j = wordCount - SHINGLE_SIZE; j < wordCount; j++) {
+                shingle = Long.rotateLeft(shingle, 21) ^ words[j % SHINGLE_SIZE];
+            }
+            shingle = mix(shingle);
+            for (int bit = 0; bit < 64; bit++) {
+                weights[bit] += (shingle >>> bit & 1) == 1 ? 1 : -1;
+            }
+        }
+        if (wordCount < MIN_WORDS) {
+            return 0;
+        }
+        
+        long fingerprint = 0;
+        for (int bit = 0; bit < 64; bit++) {
+            if (weights[bit] > 0) {
+                fingerprint |= 1L << bit;
+            }
+        }
+        return fingerprint;
+    }
+    
+    /**
+     * Finaliser of SplitMix64; spreads the bits of the combined word hashes evenly across the shingle hash.
+     */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+    
+    /**
+     * @return number of texts found to be near-duplicates, thus not analysed or not scored.
+     */
+    public long getDuplicateCount() {
+        return duplicateCount.sum();
+    }
+    
+    public long getUniqueCount() {
+        return uniqueCount.sum();
+    }
+    
+    public int getFingerprintCount() {
+        lock.readLock().lock();
+        try {
+            return fingerprintCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return "unique: " + getUniqueCount() +
+                " duplicates: " + getDuplicateCount() +
+                " fingerprints: " + getFingerprintCount();
+    }
+}
@@ -0,0 +1,222 @@
+package com.merzadyan.crawler;
+
+import com.sleepycat.je.DatabaseException;
+import com.sleepycat.je.Environment;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.CrawlController;
+import edu.uci.ics.crawler4j.frontier.Frontier;
+import edu.uci.ics.crawler4j.robotstxt.RobotstxtServer;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Frontier which keeps a queue of urls per host and hands each crawler a url of a host which is ready to be fetched
+ * from, rather than the next urls in order. crawler4j hands a crawler a batch of urls in order, thus a crawler whose
+ * next url is of a slow or backed off host waits for it even though urls of other hosts are ready; whereas this
+ * frontier interleaves the hosts, as per the delays of the {@link AdaptivePageFetcher}, so that the crawlers only
+ * wait once none of the hosts is ready.
+ * <p>
+ * Urls are moved from the work queues of crawler4j to the queues of their hosts as they are needed, thus the order of
+ * the work queues, i.e. the priority of the urls, is kept within each host. A host has at most one url handed out at
+ * a time, and the urls of hosts which are skipped by the page fetcher are dropped.
+ */
+public class HostFrontier extends Frontier {
+    private static final Logger LOGGER = Logger.getLogger(HostFrontier.class.getName());
+    
+    /**
+     * Most urls moved out of the work queues into the queues of the hosts, thus held in memory.
+     */
+    private static final int MAX_QUEUED_URLS = 1000;
+    /**
+     * Milliseconds a crawler waits for a host to be ready before checking again; new urls being scheduled or the
+     * crawl finishing wake it up sooner.
+     */
+    private static final long READY_CHECK_INTERVAL = 50;
+    
+    private final AdaptivePageFetcher pageFetcher;
+    /**
+     * Queues of the hosts in the order they are to be checked in; a host is moved to the end once one of its urls is
+     * handed out, thus the hosts take turns. Guarded by itself.
+     */
+    private final LinkedHashMap<String, ArrayDeque<WebURL>> hostQueues = new LinkedHashMap<>();
+    private int queuedUrls;
+    private long droppedUrls;
+    
+    /**
+     * Crawl controller whose crawlers are handed urls by a host frontier.
+     */
+    public static class Controller extends CrawlController {
+        public Controller(CrawlConfig config, AdaptivePageFetcher pageFetcher, RobotstxtServer robotstxtServer)
+                throws Exception {
+            super(config, pageFetcher, robotstxtServer);
+            // NOTE: the frontier of crawler4j has opened the databases of the work queues by then, thus it is closed
+            // for the host frontier to open them again.
+            frontier.close();
+            frontier = new HostFrontier(env, config, pageFetcher);
+        }
+    }
+    
+    public HostFrontier(Environment env, CrawlConfig config, AdaptivePageFetcher pageFetcher) {
+        super(env, config);
+        this.pageFetcher = pageFetcher;
+    }
+    
+    /**
+     * Hands out a single url, of a host which is ready; waits until a host is ready or the crawl is finished.
+     *
+     * @param max number of urls moved out of the work queues at a time.
+     */
+    @Override
+    public void getNextURLs(int max, List<WebURL> result) {
+        while (!isFinished()) {
+            WebURL url = nextReadyUrl(max);
+            if (url != null) {
+                result.add(url);
+                return;
+            }
+            if (getQueuedUrls() == 0) {
+                // Nothing is queued thus waits for new urls to be scheduled, as crawler4j does.
+                List<WebURL> urls = new ArrayList<>();
+                super.getNextURLs(max, urls);
+                queue(urls);
+                continue;
+            }
+            try {
+                synchronized (waitingList) {
+                    waitingList.wait(READY_CHECK_INTERVAL);
+                }
+            } catch (InterruptedException e) {
+                LOGGER.error("#getNextURLs: interrupted whilst waiting for a host to be ready.");
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+    
+    /**
+     * @return a url of the first host which is ready, moving more urls out of the work queues while none is; null if
+     * none is ready.
+     */
+    private WebURL nextReadyUrl(int max) {
+        synchronized (hostQueues) {
+            long now = System.nanoTime();
+            WebURL url = pollReadyUrl(now);
+            while (url == null && queuedUrls < MAX_QUEUED_URLS && pull(max)) {
+                url = pollReadyUrl(now);
+            }
+            return url;
+        }
+    }
+    
+    private WebURL pollReadyUrl(long now) {
+        Iterator<Map.Entry<String, ArrayDeque<WebURL>>> iterator = hostQueues.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ArrayDeque<WebURL>> entry = iterator.next();
+            String host = entry.getKey();
+            ArrayDeque<WebURL> queue = entry.getValue();
+            if (pageFetcher.isSkipped(host)) {
+                iterator.remove();
+                drop(host, queue);
+                continue;
+            }
+            if (!pageFetcher.claim(host, now)) {
+                continue;
+            }
+            WebURL url = queue.poll();
+            queuedUrls--;
+            // The host takes its next turn after the other hosts.
+            iterator.remove();
+            if (!queue.isEmpty()) {
+                hostQueues.put(host, queue);
+            }
+            return url;
+        }
+        return null;
+    }
+    
+    /**
+     * Moves urls out of the work queues without waiting for new urls, unlike {@link Frontier#getNextURLs}.
+     *
+     * @return true if any url was moved.
+     */
+    private boolean pull(int max) {
+        List<WebURL> urls;
+        synchronized (mutex) {
+            if (isFinished) {
+                return false;
+            }
+            try {
+                urls = workQueues.get(max);
+                workQueues.delete(urls.size());
+                if (inProcessPages != null) {
+                    for (WebURL url : urls) {
+                        inProcessPages.put(url);
+                    }
+                }
+            } catch (DatabaseException e) {
+                LOGGER.error("#pull: failed to move urls out of the work queues.");
+                e.printStackTrace();
+                return false;
+            }
+        }
+        queue(urls);
+        return !urls.isEmpty();
+    }
+    
+    private void queue(List<WebURL> urls) {
+        synchronized (hostQueues) {
+            for (WebURL url : urls) {
+                String host = AdaptivePageFetcher.hostOf(url);
+                if (pageFetcher.isSkipped(host)) {
+                    setProcessed(url);
+                    droppedUrls++;
+                    continue;
+                }
+                hostQueues.computeIfAbsent(host, key -> new ArrayDeque<>()).add(url);
+                queuedUrls++;
+            }
+        }
+    }
+    
+    /**
+     * Drops the urls of a skipped host; they are marked as processed, thus are not resumed either.
+     */
+    private void drop(String host, ArrayDeque<WebURL> queue) {
+        LOGGER.debug("#drop: host: " + host + " urls: " + queue.size());
+        for (WebURL url : queue) {
+            setProcessed(url);
+        }
+        queuedUrls -= queue.size();
+        droppedUrls += queue.size();
+    }
+    
+    private int getQueuedUrls() {
+        synchronized (hostQueues) {
+            return queuedUrls;
+        }
+    }
+    
+    /**
+     * @return number of urls which are yet to be handed out, thus the crawl is not over until it is 0.
+     */
+    @Override
+    public long getQueueLength() {
+        return super.getQueueLength() + getQueuedUrls();
+    }
+    
+    /**
+     * @return number of urls dropped as their hosts were skipped.
+     */
+    public long getDroppedUrls() {
+        synchronized (hostQueues) {
+            return droppedUrls;
+        }
+    }
+}
@@ -0,0 +1,334 @@
+package com.merzadyan.crawler;
+
+/**
+ * Extracts the visible body text of an HTML page in a single pass over the markup, without building a DOM.
+ * <p>
+ * The text is written into a buffer which is reused between pages. Runs of whitespace are collapsed into single
+ * spaces and block-level elements separate their text by a space, similar to Jsoup's {@code Element#text()}.
+ * The content of head, script, style, nav, noscript, template, svg and iframe elements is skipped.
+ * Comments, doctypes and processing instructions are skipped; the common character references are decoded.
+ * <p>
+ * The extractor is lenient towards malformed markup, as browsers are: unterminated tags and comments run to the end
+ * of the page and unknown character references are kept as they are.
+ * <p>
+ * Each crawler has its own extractor, thus the extractor is not thread-safe.
+ */
+public class HtmlTextExtractor {
+    static final int DEFAULT_BUFFER_CAPACITY = 16 * 1024;
+    /**
+     * Buffers which have grown beyond the capacity for an unusually large page are not retained.
+     */
+    static final int MAX_RETAINED_BUFFER_CAPACITY = 1024 * 1024;
+    
+    /**
+     * Elements which the extractor recognises; the indices are used as ids. Names are lower case.
+     */
+    private static final String[] TAGS = {
+            // Elements whose content is skipped.
+            "head", "nav", "noscript", "template", "svg", "iframe",
+            // Raw text elements whose content is skipped and not parsed as markup.
+            "script", "style",
+            // Elements which do not separate their text from the surrounding text.
+            "a", "abbr", "b", "bdi", "bdo", "cite", "code", "data", "dfn", "em", "font", "i", "kbd", "mark", "q", "s",
+            "samp", "small", "span", "strong", "sub", "sup", "time", "u", "var",
+            "body"
+    };
+    private static final int FIRST_RAW_TEXT_TAG = 6;
+    private static final int FIRST_INLINE_TAG = 8;
+    private static final int BODY_TAG = TAGS.length - 1;
+    
+    /**
+     * Named character references which are decoded, followed by the characters they stand for.
+     */
+    private static final String[] ENTITIES = {
+            "amp", "lt", "gt", "quot", "apos", "nbsp", "pound", "euro", "cent", "yen", "copy", "reg", "trade",
+            "ndash", "mdash", "lsquo", "rsquo", "ldquo", "rdquo", "hellip", "bull", "middot", "times", "percnt"
+    };
+    private static final String ENTITY_CHARACTERS = "&<>\"'\u00a0\u00a3\u20ac\u00a2\u00a5\u00a9\u00ae\u2122" +
+            "\u2013\u2014\u2018\u2019\u201c\u201d\u2026\u2022\u00b7\u00d7%";
+    /**
+     * Longest character reference, including the leading ampersand and the terminating semicolon, e.g. &#x10FFFF;
+     */
+    private static final int MAX_ENTITY_LENGTH = 10;
+    
+    private StringBuilder buffer = new StringBuilder(DEFAULT_BUFFER_CAPACITY);
+    
+    /**
+     * Depth of the skipped elements enclosing the current position.
+     */
+    private int skipDepth;
+    /**
+     * Whether whitespace or an element boundary has been seen since the last character of text.
+     */
+    private boolean space;
+    
+    /**
+     * @return body text of the page; empty if the page has no text.
+     */
+    public String extract(String html) {
+        return extractIntoBuffer(html).toString();
+    }
+    
+    /**
+     * Extracts the body text of the page into the buffer of the extractor.
+     *
+     * @return the buffer; its content is valid until the next page is extracted.
+     */
+    public CharSequence extractIntoBuffer(String html) {
+        if (buffer.capacity() > MAX_RETAINED_BUFFER_CAPACITY) {
+            buffer = new StringBuilder(DEFAULT_BUFFER_CAPACITY);
+        }
+        buffer.setLength(0);
+        skipDepth = 0;
+        space = false;
+        if (html == null) {
+            return buffer;
+        }
+        
+        int length = html.length();
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                i = readMarkup(html, i);
+            } else if (c == '&') {
+                i = readCharacterReference(html, i);
+            } else {
+                append(c);
+                i++;
+            }
+        }
+        return buffer;
+    }
+    
+    private void append(char c) {
+        if (skipDepth > 0) {
+            return;
+        }
+        if (Character.isWhitespace(c) || c == '\u00a0') {
+            space = true;
+            return;
+        }
+        if (space && buffer.length() > 0) {
+            buffer.append(' ');
+        }
+        space = false;
+        buffer.append(c);
+    }
+    
+    /**
+     * Reads the tag, comment or declaration starting at the '<' at index i.
+     *
+     * @return index following the markup.
+     */
+    private int readMarkup(String html, int i) {
+        int length = html.length();
+        if (i + 1 >= length) {
+            append('<');
+            return length;
+        }
+        
+        char next = html.charAt(i + 1);
+        if (next == '!') {
+            if (html.startsWith("--", i + 2)) {
+                int end = html.indexOf("-->", i + 4);
+                return end == -1 ? length : end + 3;
+            }
+            // Doctype or CDATA section.
+            return endOfTag(html, i + 2) + 1;
+        } else if (next == '?') {
+            return endOfTag(html, i + 2) + 1;
+        } else if (next == '/') {
+            int nameEnd = endOfName(html, i + 2);
+            if (nameEnd == i + 2) {
+                // Not an end tag e.g. "</ " thus treated as text.
+                append('<');
+                return i + 1;
+            }
+            endTag(tagId(html, i + 2, nameEnd));
+            return endOfTag(html, nameEnd) + 1;
+        } else if (isLetter(next)) {
+            int nameEnd = endOfName(html, i + 1);
+            int tagId = tagId(html, i + 1, nameEnd);
+            int tagEnd = endOfTag(html, nameEnd);
+            boolean selfClosing = tagEnd < length && html.charAt(tagEnd - 1) == '/';
+            if (tagId >= FIRST_RAW_TEXT_TAG && tagId < FIRST_INLINE_TAG && !selfClosing) {
+                // The content of script and style elements is never text.
+                space = true;
+                return endOfRawText(html, tagEnd + 1, TAGS[tagId]);
+            }
+            startTag(tagId, selfClosing);
+            return tagEnd + 1;
+        }
+        
+        // A '<' which does not start markup e.g. "a < b".
+        append('<');
+        return i + 1;
+    }
+    
+    private void startTag(int tagId, boolean selfClosing) {
+        if (tagId == BODY_TAG) {
+            // The head may not have been closed.
+            skipDepth = 0;
+        } else if (tagId >= 0 && tagId < FIRST_RAW_TEXT_TAG && !selfClosing) {
+            skipDepth++;
+        }
+        if (tagId < FIRST_INLINE_TAG) {
+            space = true;
+        }
+    }
+    
+    private void endTag(int tagId) {
+        if (tagId >= 0 && tagId < FIRST_RAW_TEXT_TAG && skipDepth > 0) {
+            skipDepth--;
+        }
+        if (tagId < FIRST_INLINE_TAG) {
+            space = true;
+        }
+    }
+    
+    /**
+     * @return index of the '>' which ends the tag; the length of the html if the tag is not terminated.
+     * A '>' within a quoted attribute value does not end the tag.
+     */
+    private static int endOfTag(String html, int i) {
+        int length = html.length();
+        char quote = 0;
+        char previous = 0;
+        for (; i < length; i++) {
+            char c = html.charAt(i);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if ((c == '"' || c == '\'') && previous == '=') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+            if (!Character.isWhitespace(c)) {
+                previous = c;
+            }
+        }
+        return length;
+    }
+    
+    private static int endOfName(String html, int i) {
+        int length = html.length();
+        while (i < length) {
+            char c = html.charAt(i);
+            if (Character.isWhitespace(c) || c == '/' || c == '>') {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+    
+    /**
+     * @return index following the end tag of the raw text element; the length of the html if it is not closed.
+     */
+    private static int endOfRawText(String html, int i, String name) {
+        int length = html.length();
+        while (true) {
+            int end = html.indexOf("</", i);
+            if (end == -1) {
+                return length;
+            }
+            int nameEnd = end + 2 + name.length();
+            if (html.regionMatches(true, end + 2, name, 0, name.length())
+                    && (nameEnd >= length || !isLetter(html.charAt(nameEnd)))) {
+                return Math.min(length, endOfTag(html, nameEnd) + 1);
+            }
+            i = end + 2;
+        }
+    }
+    
+    /**
+     * @return id of the element named by html[start, end) i.e. its index in {@link #TAGS}; -1 if it is not recognised.
+     */
+    private static int tagId(String html, int start, int end) {
+        int length = end - start;
+        for (int i = 0; i < TAGS.length; i++) {
+            if (TAGS[i].length() == length && html.regionMatches(true, start, TAGS[i], 0, length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Reads the character reference starting at the '&' at index i.
+     *
+     * @return index following the character reference.
+     */
+    private int readCharacterReference(String html, int i) {
+        int limit = Math.min(html.length(), i + MAX_ENTITY_LENGTH);
+        int semicolon = -1;
+        for (int j = i + 1; j < limit; j++) {
+            if (html.charAt(j) == ';') {
+                semicolon = j;
+                break;
+            }
+        }
+        if (semicolon == -1) {
+            append('&');
+            return i + 1;
+        }
+        
+        if (html.charAt(i + 1) == '#') {
+            int codePoint = parseCodePoint(html, i + 2, semicolon);
+            if (codePoint == -1) {
+                append('&');
+                return i + 1;
+            }
+            if (Character.isBmpCodePoint(codePoint)) {
+                append((char) codePoint);
+            } else {
+                append(Character.highSurrogate(codePoint));
+                append(Character.lowSurrogate(codePoint));
+            }
+            return semicolon + 1;
+        }
+        
+        int length = semicolon - i - 1;
+        for (int e = 0; e < ENTITIES.length; e++) {
+            if (ENTITIES[e].length() == length && html.regionMatches(i + 1, ENTITIES[e], 0, length)) {
+                append(ENTITY_CHARACTERS.charAt(e));
+                return semicolon + 1;
+            }
+        }
+        append('&');
+        return i + 1;
+    }
+    
+    /**
+     * @return code point of the numeric character reference html[start, end) e.g. 163 or xA3; -1 if it is invalid.
+     */
+    private static int parseCodePoint(String html, int start, int end) {
+        int radix = 10;
+        if (start < end && (html.charAt(start) == 'x' || html.charAt(start) == 'X')) {
+            radix = 16;
+            start++;
+        }
+        if (start == end) {
+            return -1;
+        }
+        int codePoint = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(html.charAt(i), radix);
+            if (digit == -1) {
+                return -1;
+            }
+            codePoint = codePoint * radix + digit;
+            if (codePoint > Character.MAX_CODE_POINT) {
+                return -1;
+            }
+        }
+        return codePoint == 0 ? -1 : codePoint;
+    }
+    
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+}
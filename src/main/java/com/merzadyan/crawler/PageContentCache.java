@@ -0,0 +1,100 @@
+package com.merzadyan.crawler;
+
+import com.merzadyan.stock.StockMatcher;
+import org.ahocorasick.trie.Emit;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the extracted body text and trie matches of the pages being processed by a crawler, keyed by URL, so that
+ * each page is parsed and scanned once although it is consumed by both {@link Crawler#shouldVisit} (once per outgoing
+ * url) and {@link Crawler#visit}.
+ * <p>
+ * crawler4j filters the outgoing urls of a page before visiting it, thus an entry is evicted once the page has been
+ * visited i.e. after its outgoing urls have been scheduled. The cache is bounded in case a page is never visited e.g.
+ * when processing the page fails; the least recently used entry is evicted first.
+ * <p>
+ * Each crawler has its own cache, thus the cache is not thread-safe.
+ */
+class PageContentCache {
+    static final int DEFAULT_CAPACITY = 8;
+    
+    static class Content {
+        private final String text;
+        private final Collection<Emit> emits;
+        private final StockMatcher stockMatcher;
+        
+        Content(String text, Collection<Emit> emits, StockMatcher stockMatcher) {
+            this.text = text;
+            this.emits = emits;
+            this.stockMatcher = stockMatcher;
+        }
+        
+        String getText() {
+            return text;
+        }
+        
+        /**
+         * @return matches of the trie in the text; empty if the page does not mention a SOI.
+         */
+        Collection<Emit> getEmits() {
+            return emits;
+        }
+        
+        /**
+         * @return matcher which found the matches.
+         */
+        StockMatcher getStockMatcher() {
+            return stockMatcher;
+        }
+    }
+    
+    private final Map<String, Content> contents;
+    
+    private long hitCount;
+    private long missCount;
+    
+    PageContentCache(int capacity) {
+        contents = new LinkedHashMap<String, Content>(capacity, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Content> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+    
+    /**
+     * @return content of the page at the url; null if the page is not in the cache.
+     */
+    Content get(String url) {
+        Content content = contents.get(url);
+        if (content == null) {
+            missCount++;
+        } else {
+            hitCount++;
+        }
+        return content;
+    }
+    
+    void put(String url, Content content) {
+        contents.put(url, content);
+    }
+    
+    void evict(String url) {
+        contents.remove(url);
+    }
+    
+    int size() {
+        return contents.size();
+    }
+    
+    long getHitCount() {
+        return hitCount;
+    }
+    
+    long getMissCount() {
+        return missCount;
+    }
+}
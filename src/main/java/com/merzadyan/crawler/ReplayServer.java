@@ -0,0 +1,226 @@
+package com.merzadyan.crawler;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Serves a recorded corpus of pages from a local HTTP server so that crawls can be replayed offline and
+ * reproducibly e.g. to measure crawl throughput without depending on external websites.
+ * <p>
+ * The corpus is a directory wherein the path of each file is the path of the page it was recorded from e.g.
+ * markets/barclays.html is served at http://127.0.0.1:port/markets/barclays.html; the link graph is
+ * therefore that of the host-relative links within the pages. Pages missing from the corpus are answered with 404.
+ * <p>
+ * Latency and bandwidth can be configured to approximate those of the recorded websites.
+ */
+public class ReplayServer {
+    private static final Logger LOGGER = Logger.getLogger(ReplayServer.class.getName());
+    
+    /**
+     * References the directory of the corpus which is bundled with the benchmarks.
+     */
+    public static final String DEFAULT_CORPUS_DIR = "src/jmh/resources/corpus";
+    public static final String DEFAULT_SEED_PATH = "/index.html";
+    /**
+     * Number of chunks per second the response body is written in when the bandwidth is limited.
+     */
+    private static final int CHUNKS_PER_SECOND = 20;
+    
+    private final Path corpusDir;
+    private HttpServer server;
+    private ExecutorService executor;
+    
+    private volatile int latency;
+    private volatile int bandwidth;
+    
+    private final LongAdder requestCount = new LongAdder();
+    private final LongAdder notFoundCount = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+    
+    public ReplayServer(String corpusDir) {
+        this.corpusDir = Paths.get(corpusDir).toAbsolutePath().normalize();
+    }
+    
+    /**
+     * Starts the server on an ephemeral port of the loopback address.
+     */
+    public synchronized void start() throws IOException {
+        if (server != null) {
+            return;
+        }
+        if (!Files.isDirectory(corpusDir)) {
+            throw new IOException("Corpus directory does not exist: " + corpusDir);
+        }
+        
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", this::handle);
+        // A thread per connection so that the crawlers are served concurrently as they would be by a website.
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Replay server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.start();
+        LOGGER.debug("#start: serving " + corpusDir + " at " + getBaseUrl());
+    }
+    
+    public synchronized void stop() {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        executor.shutdownNow();
+        server = null;
+        executor = null;
+        LOGGER.debug("#stop: requests: " + getRequestCount() + " not found: " + getNotFoundCount() +
+                " bytes served: " + getBytesServed());
+    }
+    
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requestCount.increment();
+            sleep(latency);
+            
+            Path file = resolve(exchange.getRequestURI());
+            if (file == null || !Files.isRegularFile(file)) {
+                notFoundCount.increment();
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+            
+            byte[] body = Files.readAllBytes(file);
+            exchange.getResponseHeaders().set("Content-Type", contentType(file));
+            exchange.sendResponseHeaders(200, body.length);
+            // NOTE: counted before the body is written since the client may read it, and the counts, before the
+            // stream is closed.
+            bytesServed.add(body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                write(out, body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+    
+    /**
+     * @return file of the corpus at the path of the URI; null if the path leads outside of the corpus.
+     */
+    private Path resolve(URI uri) {
+        String path = uri.getPath();
+        if (path == null || path.isEmpty() || path.equals("/")) {
+            path = DEFAULT_SEED_PATH;
+        }
+        Path file = corpusDir.resolve(path.substring(1)).normalize();
+        return file.startsWith(corpusDir) ? file : null;
+    }
+    
+    /**
+     * Writes the body at no more than the configured bandwidth.
+     */
+    private void write(OutputStream out, byte[] body) throws IOException {
+        int bandwidth = this.bandwidth;
+        if (bandwidth <= 0) {
+            out.write(body);
+            return;
+        }
+        
+        int chunkSize = Math.max(1, bandwidth / CHUNKS_PER_SECOND);
+        long start = System.nanoTime();
+        for (int offset = 0; offset < body.length; offset += chunkSize) {
+            int length = Math.min(chunkSize, body.length - offset);
+            out.write(body, offset, length);
+            out.flush();
+            // Time by which the bytes written so far should have been written at the configured bandwidth.
+            long due = start + (offset + length) * 1_000_000_000L / bandwidth;
+            sleep((int) ((due - System.nanoTime()) / 1_000_000L));
+        }
+    }
+    
+    private static String contentType(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".html") || name.endsWith(".htm")) {
+            return "text/html; charset=UTF-8";
+        } else if (name.endsWith(".txt")) {
+            return "text/plain; charset=UTF-8";
+        }
+        return "application/octet-stream";
+    }
+    
+    private static void sleep(int millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * @return URL of the server e.g. http://127.0.0.1:41234; null if the server is not started.
+     */
+    public synchronized String getBaseUrl() {
+        if (server == null) {
+            return null;
+        }
+        return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort();
+    }
+    
+    public String getSeedUrl() {
+        String baseUrl = getBaseUrl();
+        return baseUrl == null ? null : baseUrl + DEFAULT_SEED_PATH;
+    }
+    
+    public int getLatency() {
+        return latency;
+    }
+    
+    /**
+     * @param latency milliseconds to wait before responding to each request.
+     */
+    public void setLatency(int latency) {
+        if (latency >= 0) {
+            this.latency = latency;
+        }
+    }
+    
+    public int getBandwidth() {
+        return bandwidth;
+    }
+    
+    /**
+     * @param bandwidth bytes per second each response is written at; 0 for unlimited.
+     */
+    public void setBandwidth(int bandwidth) {
+        if (bandwidth >= 0) {
+            this.bandwidth = bandwidth;
+        }
+    }
+    
+    public long getRequestCount() {
+        return requestCount.sum();
+    }
+    
+    public long getNotFoundCount() {
+        return notFoundCount.sum();
+    }
+    
+    public long getBytesServed() {
+        return bytesServed.sum();
+    }
+}
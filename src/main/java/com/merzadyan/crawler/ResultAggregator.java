@@ -0,0 +1,225 @@
+package com.merzadyan.crawler;
+
+import com.merzadyan.stock.DateCategoriser;
+import com.merzadyan.stock.Stock;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Histograms of the sentiment scores of a single crawl, by stock id, shared by all of its crawlers and analysers.
+ * <p>
+ * Each stock has a striped counter per score, and recording a score only takes the lock of its histogram in shared
+ * mode, thus threads recording against the same stock do not block each other; a snapshot takes it exclusively, so
+ * that the histogram of a stock is read as of a single point in time. The table of stocks is copy-on-write and only
+ * copied when a stock is recorded for the first time. As the scores are recorded crawl-wide, the results need no
+ * merging once the crawlers terminate.
+ * <p>
+ * A crawl of a range of dates may be bucketed, e.g. by week, in which case each stock has a histogram per bucket
+ * and the scores of an article are recorded in the bucket of its date; a single crawl thus yields the results of
+ * every bucket.
+ */
+public class ResultAggregator {
+    /**
+     * Number of fine-grain sentiment scores, 0-4, thus the length of a histogram.
+     */
+    public static final int HISTOGRAM_SIZE = 5;
+    
+    private static class StockHistogram {
+        private final Stock stock;
+        /**
+         * Histograms of the buckets, one after the other.
+         */
+        private final LongAdder[] counts;
+        /**
+         * Held in read mode whilst recording, as the counters need no exclusion from one another, and in write mode
+         * whilst a snapshot reads the counters.
+         */
+        private final StampedLock lock = new StampedLock();
+        
+        StockHistogram(Stock stock, int bucketCount) {
+            this.stock = stock;
+            counts = new LongAdder[bucketCount * HISTOGRAM_SIZE];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = new LongAdder();
+            }
+        }
+    }
+    
+    /**
+     * Histograms by stock id; null for stocks which have no scores.
+     */
+    private volatile StockHistogram[] histograms = new StockHistogram[0];
+    /**
+     * Buckets of the dates of the crawl; null if the crawl is a single interval.
+     */
+    private final DateCategoriser dateCategoriser;
+    private final int bucketCount;
+    
+    /**
+     * Aggregates the scores of a single interval.
+     */
+    public ResultAggregator() {
+        this(null);
+    }
+    
+    /**
+     * @param dateCategoriser buckets of the dates of the crawl; null if the crawl is a single interval.
+     */
+    public ResultAggregator(DateCategoriser dateCategoriser) {
+        this.dateCategoriser = dateCategoriser;
+        bucketCount = dateCategoriser == null ? 1 : dateCategoriser.getBucketCount();
+    }
+    
+    /**
+     * Records a sentiment score against the stock.
+     *
+     * @param stockId id of the stock as assigned by the {@link com.merzadyan.stock.SOIRegistry}.
+     * @param score   sentiment score in a range of 0-4; other scores are ignored.
+     */
+    public void record(int stockId, Stock stock, int score) {
+        record(stockId, stock, 0, score);
+    }
+    
+    /**
+     * Records a sentiment score against the stock in a bucket.
+     *
+     * @param bucket index of the bucket of the date of the article, from 0; other buckets are ignored.
+     * @param score  sentiment score in a range of 0-4; other scores are ignored.
+     */
+    public void record(int stockId, Stock stock, int bucket, int score) {
+        if (score < 0 || score >= HISTOGRAM_SIZE || bucket < 0 || bucket >= bucketCount) {
+            return;
+        }
+        StockHistogram[] current = histograms;
+        StockHistogram histogram = stockId < current.length ? current[stockId] : null;
+        if (histogram == null) {
+            histogram = addHistogram(stockId, stock);
+        }
+        long stamp = histogram.lock.readLock();
+        try {
+            histogram.counts[bucket * HISTOGRAM_SIZE + score].increment();
+        } finally {
+            histogram.lock.unlockRead(stamp);
+        }
+    }
+    
+    private synchronized StockHistogram addHistogram(int stockId, Stock stock) {
+        StockHistogram[] current = histograms;
+        if (stockId < current.length && current[stockId] != null) {
+            // Added by another thread in the meantime.
+            return current[stockId];
+        }
+        StockHistogram[] grown = Arrays.copyOf(current, Math.max(stockId + 1, current.length));
+        grown[stockId] = new StockHistogram(stock, bucketCount);
+        histograms = grown;
+        return grown[stockId];
+    }
+    
+    /**
+     * Can be called at any time, including while scores are being recorded, e.g. by each crawler as it exits; the
+     * histograms of a stock, of every bucket, are read whilst no score is being recorded against it, thus they are
+     * consistent with one another and with its predominant score, and never go backwards between snapshots. Scores
+     * recorded against other stocks while the snapshot is taken may or may not be included. Once the crawlers have
+     * terminated, the snapshot holds every score of the crawl.
+     *
+     * @return a copy of each stock which has scores, marked with its histogram, predominant sentiment score and the
+     * dates of the crawl; ordered by stock id. If the crawl is bucketed, a copy of each stock per bucket in which it
+     * has scores, marked with the first and last dates of the bucket instead; ordered by bucket then stock id.
+     */
+    public List<Stock> snapshot(LocalDate startDate, LocalDate endDate) {
+        StockHistogram[] current = histograms;
+        // Counts of each stock, of every bucket, read at once.
+        long[][] counts = new long[current.length][];
+        for (int id = 0; id < current.length; id++) {
+            if (current[id] != null) {
+                counts[id] = read(current[id]);
+            }
+        }
+        
+        List<Stock> results = new ArrayList<>();
+        if (dateCategoriser == null) {
+            snapshot(0, startDate, endDate, current, counts, results);
+            return results;
+        }
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            // NOTE: a bucket ends before its end date whereas the dates of a stock are inclusive.
+            snapshot(bucket, dateCategoriser.getStartOf(bucket), dateCategoriser.getEndOf(bucket).minusDays(1),
+                    current, counts, results);
+        }
+        return results;
+    }
+    
+    private static long[] read(StockHistogram stockHistogram) {
+        long[] counts = new long[stockHistogram.counts.length];
+        long stamp = stockHistogram.lock.writeLock();
+        try {
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = stockHistogram.counts[i].sum();
+            }
+        } finally {
+            stockHistogram.lock.unlockWrite(stamp);
+        }
+        return counts;
+    }
+    
+    private void snapshot(int bucket, LocalDate startDate, LocalDate endDate, StockHistogram[] stockHistograms,
+                          long[][] counts, List<Stock> results) {
+        int offset = bucket * HISTOGRAM_SIZE;
+        for (int id = 0; id < stockHistograms.length; id++) {
+            StockHistogram stockHistogram = stockHistograms[id];
+            if (stockHistogram == null) {
+                continue;
+            }
+            int[] histogram = new int[HISTOGRAM_SIZE];
+            int highestFrequency = -1, indexOfHighestFrequency = -1;
+            // Determine largest value in array thus most frequent sentiment score.
+            for (int i = 0; i < histogram.length; i++) {
+                histogram[i] = (int) Math.min(Integer.MAX_VALUE, counts[id][offset + i]);
+                if (histogram[i] > highestFrequency) {
+                    highestFrequency = histogram[i];
+                    indexOfHighestFrequency = i;
+                }
+            }
+            if (highestFrequency == 0 && dateCategoriser != null) {
+                // No scores in this bucket.
+                continue;
+            }
+            
+            // The stock of interest is shared thus the result is a copy of it.
+            Stock stockOfInterest = stockHistogram.stock;
+            Stock stock = new Stock(stockOfInterest.getCompany(), stockOfInterest.getSymbol(),
+                    stockOfInterest.getStockExchange());
+            // Mark stock with the latest sentiment score.
+            stock.setLatestSentimentScore(indexOfHighestFrequency);
+            stock.setHistogram(histogram);
+            stock.setStartDate(startDate);
+            stock.setEndDate(endDate);
+            results.add(stock);
+        }
+    }
+    
+    /**
+     * @return number of buckets of the dates of the crawl; 1 if the crawl is a single interval.
+     */
+    public int getBucketCount() {
+        return bucketCount;
+    }
+    
+    /**
+     * @return number of stocks which have scores.
+     */
+    public int getStockCount() {
+        int count = 0;
+        for (StockHistogram histogram : histograms) {
+            if (histogram != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
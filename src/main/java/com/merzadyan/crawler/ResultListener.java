@@ -0,0 +1,37 @@
+package com.merzadyan.crawler;
+
+import com.merzadyan.stock.Stock;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Receives the results of a crawl as they are produced, rather than only once every crawler has terminated, e.g. to
+ * update charts during the crawl or to stop the crawl early once the histograms have settled.
+ * <p>
+ * Listeners are called from the threads of the crawl thus must return quickly and be thread-safe.
+ */
+public interface ResultListener {
+    /**
+     * Called on an analyser thread for every article which yields a sentiment score.
+     *
+     * @param stock stock of interest the article refers to; shared, thus must not be modified.
+     * @param date  date of the article; null if it could not be parsed.
+     * @param score sentiment score in a range of 0-4.
+     * @param url   url of the article.
+     */
+    default void onResult(Stock stock, LocalDate date, int score, String url) {
+    
+    }
+    
+    /**
+     * Called periodically while the crawl is running, if new scores have been recorded since the last call, and a
+     * final time once the crawl is over.
+     *
+     * @param results  results of the crawl so far; see {@link ResultAggregator#snapshot}.
+     * @param finished true for the final call, whose results are complete.
+     */
+    default void onSnapshot(List<Stock> results, boolean finished) {
+    
+    }
+}
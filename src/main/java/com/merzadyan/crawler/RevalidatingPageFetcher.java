@@ -0,0 +1,84 @@
+package com.merzadyan.crawler;
+
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.crawler.exceptions.PageBiggerThanMaxSizeException;
+import edu.uci.ics.crawler4j.fetcher.PageFetchResult;
+import edu.uci.ics.crawler4j.fetcher.PageFetcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.apache.http.client.methods.HttpUriRequest;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ * Page fetcher which revalidates the pages analysed by earlier crawls rather than downloading them again: the
+ * validators of the last version of the page are sent in a conditional request (If-None-Match and
+ * If-Modified-Since), and a page which has not changed is answered with 304 Not Modified and no content.
+ * <p>
+ * crawler4j does not process the pages of a 304 response, thus the crawler reuses the analysis of the last version
+ * of the page instead; see {@link Crawler}.
+ */
+public class RevalidatingPageFetcher extends PageFetcher {
+    public static final int NOT_MODIFIED = 304;
+    
+    private final RevalidationStore revalidationStore;
+    private final Predicate<RevalidationStore.Entry> revalidatable;
+    
+    private final LongAdder conditionalRequestCount = new LongAdder();
+    private final LongAdder notModifiedCount = new LongAdder();
+    
+    /**
+     * @param revalidationStore validators of the pages; null to always download pages.
+     * @param revalidatable     whether a page may be revalidated, i.e. its last analysis can still be reused.
+     */
+    public RevalidatingPageFetcher(CrawlConfig config, RevalidationStore revalidationStore,
+                                   Predicate<RevalidationStore.Entry> revalidatable) {
+        super(config);
+        this.revalidationStore = revalidationStore;
+        this.revalidatable = revalidatable;
+    }
+    
+    @Override
+    protected HttpUriRequest newHttpUriRequest(String url) {
+        HttpUriRequest request = super.newHttpUriRequest(url);
+        if (revalidationStore == null) {
+            return request;
+        }
+        RevalidationStore.Entry entry = revalidationStore.get(url);
+        if (entry == null || !revalidatable.test(entry)) {
+            return request;
+        }
+        if (entry.getEtag() != null) {
+            request.addHeader("If-None-Match", entry.getEtag());
+        }
+        if (entry.getLastModified() != null) {
+            request.addHeader("If-Modified-Since", entry.getLastModified());
+        }
+        conditionalRequestCount.increment();
+        return request;
+    }
+    
+    @Override
+    public PageFetchResult fetchPage(WebURL webUrl)
+            throws InterruptedException, IOException, PageBiggerThanMaxSizeException {
+        PageFetchResult result = super.fetchPage(webUrl);
+        if (result.getStatusCode() == NOT_MODIFIED) {
+            notModifiedCount.increment();
+        }
+        return result;
+    }
+    
+    public long getConditionalRequestCount() {
+        return conditionalRequestCount.sum();
+    }
+    
+    public long getNotModifiedCount() {
+        return notModifiedCount.sum();
+    }
+    
+    @Override
+    public String toString() {
+        return "conditional requests: " + getConditionalRequestCount() + " not modified: " + getNotModifiedCount();
+    }
+}
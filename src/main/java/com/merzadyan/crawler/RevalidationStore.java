@@ -0,0 +1,189 @@
+package com.merzadyan.crawler;
+
+import org.apache.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Validators of the pages analysed by earlier crawls, by url: the ETag and Last-Modified of the last version of each
+ * page, along with the key of its analysis in the {@link com.merzadyan.analyser.AnalysisCache}. Recrawls send them
+ * in conditional requests, thus pages which have not changed are neither downloaded nor analysed again.
+ * <p>
+ * Kept in memory and saved to a file between crawls. Bounded; the least recently used url is evicted first.
+ * Thread-safe.
+ */
+public class RevalidationStore {
+    private static final Logger LOGGER = Logger.getLogger(RevalidationStore.class.getName());
+    
+    public static final int DEFAULT_CAPACITY = 32768;
+    
+    private static final int MAGIC = 0x52565331;
+    
+    /**
+     * Validators of the last version of a page; either may be null but not both.
+     */
+    public static class Entry {
+        private final String etag;
+        private final String lastModified;
+        private final long analysisKey;
+        private final long signature;
+        
+        /**
+         * @param analysisKey key of the analysis of the page.
+         * @param signature   signature of what the analysis depends on, see
+         *                    {@link com.merzadyan.analyser.AnalysisCache#signatureOf}.
+         */
+        public Entry(String etag, String lastModified, long analysisKey, long signature) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.analysisKey = analysisKey;
+            this.signature = signature;
+        }
+        
+        public String getEtag() {
+            return etag;
+        }
+        
+        public String getLastModified() {
+            return lastModified;
+        }
+        
+        public long getAnalysisKey() {
+            return analysisKey;
+        }
+        
+        public long getSignature() {
+            return signature;
+        }
+    }
+    
+    private final Path file;
+    private final Map<String, Entry> entries;
+    /**
+     * Held across writing and moving the file, thus saves do not interleave.
+     */
+    private final Object fileLock = new Object();
+    
+    /**
+     * Loads the store from the file, if it exists.
+     */
+    public RevalidationStore(Path file, int capacity) {
+        this.file = file;
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, RevalidationStore.Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        if (file != null && Files.isRegularFile(file)) {
+            load();
+        }
+    }
+    
+    private void load() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                LOGGER.debug("#load: unknown format, starting afresh: " + file);
+                return;
+            }
+            int count = in.readInt();
+            synchronized (entries) {
+                for (int i = 0; i < count; i++) {
+                    String url = in.readUTF();
+                    String etag = in.readUTF();
+                    String lastModified = in.readUTF();
+                    entries.put(url, new Entry(etag.isEmpty() ? null : etag, lastModified.isEmpty() ? null :
+                            lastModified, in.readLong(), in.readLong()));
+                }
+            }
+            LOGGER.debug("#load: urls: " + count + " file: " + file);
+        } catch (IOException e) {
+            LOGGER.error("#load: failed to load the revalidation store: " + file);
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * Saves the store to its file; the file is replaced once written in full. Saves by several threads at once are
+     * run one after the other.
+     */
+    public void save() {
+        if (file == null) {
+            return;
+        }
+        synchronized (fileLock) {
+            write();
+        }
+    }
+    
+    private void write() {
+        List<Map.Entry<String, Entry>> snapshot;
+        synchronized (entries) {
+            snapshot = new ArrayList<>(entries.entrySet());
+        }
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    Files.newOutputStream(temporaryFile)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(snapshot.size());
+                // NOTE: in access order, thus the least recently used urls are still evicted first once loaded.
+                for (Map.Entry<String, Entry> urlEntry : snapshot) {
+                    Entry entry = urlEntry.getValue();
+                    out.writeUTF(urlEntry.getKey());
+                    out.writeUTF(entry.etag == null ? "" : entry.etag);
+                    out.writeUTF(entry.lastModified == null ? "" : entry.lastModified);
+                    out.writeLong(entry.analysisKey);
+                    out.writeLong(entry.signature);
+                }
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            LOGGER.error("#save: failed to save the revalidation store: " + file);
+            e.printStackTrace();
+        }
+    }
+    
+    /**
+     * @return validators of the last version of the page; null if there are none.
+     */
+    public Entry get(String url) {
+        synchronized (entries) {
+            return entries.get(url);
+        }
+    }
+    
+    /**
+     * Records the validators of the page, replacing those of its previous version; a page without validators is
+     * removed, as it cannot be revalidated.
+     */
+    public void put(String url, String etag, String lastModified, long analysisKey, long signature) {
+        synchronized (entries) {
+            if (etag == null && lastModified == null) {
+                entries.remove(url);
+            } else {
+                entries.put(url, new Entry(etag, lastModified, analysisKey, signature));
+            }
+        }
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
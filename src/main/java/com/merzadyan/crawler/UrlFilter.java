@@ -0,0 +1,235 @@
+package com.merzadyan.crawler;
+
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pre-filter of the discovered urls, run before any of the content of the referring page is looked at. Rejects urls
+ * of non-text resources by the extension of their path, of hosts which are not allowed or are denied, and urls which
+ * are too long or have too many query parameters, e.g. calendars and session ids.
+ * <p>
+ * Checking a url does not allocate: the extension is packed into a long and looked up in a sorted array, and the host
+ * is compared in place within the url. Immutable, apart from its counters, thus shared by the crawlers of a crawl.
+ */
+public class UrlFilter {
+    /**
+     * Checks of #reject in the order in which they are run, cheapest first; the first to fail rejects the url.
+     */
+    public enum Reason {
+        LENGTH,
+        EXTENSION,
+        HOST,
+        QUERY
+    }
+    
+    /**
+     * Extensions of non-text, non-readable resources.
+     */
+    public static final List<String> DEFAULT_EXCLUDED_EXTENSIONS = Collections.unmodifiableList(Arrays.asList(
+            // Image.
+            "mng", "pct", "bmp", "gif", "jpg", "jpeg", "png", "pst", "psp", "tif",
+            "tiff", "ai", "drw", "dxf", "eps", "ps", "svg", "webp", "ico",
+            
+            // Video
+            "3gp", "asf", "asx", "avi", "mov", "mp4", "mpg", "qt", "rm", "swf", "wmv",
+            "m4a", "flv", "webm",
+            
+            // Audio.
+            "mp3", "wma", "ogg", "wav", "ra", "aac", "mid", "au", "aiff", "flac",
+            
+            // Fonts.
+            "woff", "woff2", "ttf", "eot",
+            
+            // Misc.
+            "css", "js", "json", "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "exe", "bin", "rss", "zip",
+            "rar", "gz", "tar", "7z", "dmg", "iso", "apk"
+    ));
+    /**
+     * Longer extensions do not fit in a packed extension and are never excluded.
+     */
+    private static final int MAX_EXTENSION_LENGTH = 9;
+    
+    /**
+     * Sorted packed extensions.
+     */
+    private final long[] excludedExtensions;
+    /**
+     * Lower case hosts; a host also covers its sub-domains, e.g. "bbc.co.uk" covers "www.bbc.co.uk".
+     */
+    private final String[] allowedHosts;
+    private final String[] deniedHosts;
+    private final int maxUrlLength;
+    private final int maxQueryParameters;
+    
+    private final EnumMap<Reason, LongAdder> rejectCounts = new EnumMap<>(Reason.class);
+    private final LongAdder acceptCount = new LongAdder();
+    
+    /**
+     * Filters the default extensions only.
+     */
+    public UrlFilter() {
+        this(DEFAULT_EXCLUDED_EXTENSIONS, Collections.emptyList(), Collections.emptyList(), 0, 0);
+    }
+    
+    /**
+     * @param excludedExtensions extensions of the paths to reject, without the dot, ignoring case.
+     * @param allowedHosts       hosts to crawl, along with their sub-domains; empty to allow any host.
+     * @param deniedHosts        hosts not to crawl, along with their sub-domains.
+     * @param maxUrlLength       length of the longest url to crawl; 0 for unlimited.
+     * @param maxQueryParameters number of query parameters of the url to crawl; 0 for unlimited.
+     */
+    public UrlFilter(Collection<String> excludedExtensions, Collection<String> allowedHosts,
+                     Collection<String> deniedHosts, int maxUrlLength, int maxQueryParameters) {
+        this.excludedExtensions = excludedExtensions.stream()
+                .mapToLong(extension -> packExtension(extension, 0, extension.length()))
+                .filter(packed -> packed != -1)
+                .sorted()
+                .distinct()
+                .toArray();
+        this.allowedHosts = normaliseHosts(allowedHosts);
+        this.deniedHosts = normaliseHosts(deniedHosts);
+        this.maxUrlLength = maxUrlLength;
+        this.maxQueryParameters = maxQueryParameters;
+        for (Reason reason : Reason.values()) {
+            rejectCounts.put(reason, new LongAdder());
+        }
+    }
+    
+    private static String[] normaliseHosts(Collection<String> hosts) {
+        return hosts.stream()
+                .map(host -> host.trim().toLowerCase())
+                .filter(host -> !host.isEmpty())
+                .toArray(String[]::new);
+    }
+    
+    /**
+     * @return the check which rejects the url; null if the url passes every check.
+     */
+    public Reason reject(WebURL url) {
+        Reason reason = reject(url.getURL(), url.getPath());
+        if (reason == null) {
+            acceptCount.increment();
+        } else {
+            rejectCounts.get(reason).increment();
+        }
+        return reason;
+    }
+    
+    /**
+     * @param path path of the url, without its query.
+     */
+    private Reason reject(String href, String path) {
+        if (maxUrlLength > 0 && href.length() > maxUrlLength) {
+            return Reason.LENGTH;
+        }
+        if (path != null && isExcludedExtension(path)) {
+            return Reason.EXTENSION;
+        }
+        
+        int hostStart = href.indexOf("://");
+        hostStart = hostStart < 0 ? 0 : hostStart + 3;
+        int hostEnd = hostStart;
+        while (hostEnd < href.length() && "/:?#".indexOf(href.charAt(hostEnd)) < 0) {
+            hostEnd++;
+        }
+        if ((allowedHosts.length > 0 && !matchesAny(href, hostStart, hostEnd, allowedHosts)) ||
+                matchesAny(href, hostStart, hostEnd, deniedHosts)) {
+            return Reason.HOST;
+        }
+        
+        if (maxQueryParameters > 0 && queryParametersOf(href, hostEnd) > maxQueryParameters) {
+            return Reason.QUERY;
+        }
+        return null;
+    }
+    
+    private boolean isExcludedExtension(String path) {
+        int end = path.length();
+        int dot = end - 1;
+        while (dot >= 0 && path.charAt(dot) != '.' && path.charAt(dot) != '/') {
+            dot--;
+        }
+        if (dot < 0 || path.charAt(dot) != '.') {
+            return false;
+        }
+        long packed = packExtension(path, dot + 1, end);
+        return packed != -1 && Arrays.binarySearch(excludedExtensions, packed) >= 0;
+    }
+    
+    /**
+     * Packs the lower case extension into a long, 7 bits per character; as characters are never 0, extensions of
+     * different lengths never pack alike.
+     *
+     * @return -1 if the extension is empty, too long or has characters other than ASCII letters and digits.
+     */
+    static long packExtension(CharSequence extension, int start, int end) {
+        if (end <= start || end - start > MAX_EXTENSION_LENGTH) {
+            return -1;
+        }
+        long packed = 0;
+        for (int i = start; i < end; i++) {
+            char c = extension.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c - 'A' + 'a');
+            } else if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9')) {
+                return -1;
+            }
+            packed = packed << 7 | c;
+        }
+        return packed;
+    }
+    
+    /**
+     * @return true if the host, between the indices of the url, is one of the hosts or a sub-domain of one.
+     */
+    private static boolean matchesAny(String href, int hostStart, int hostEnd, String[] hosts) {
+        int hostLength = hostEnd - hostStart;
+        for (String host : hosts) {
+            int offset = hostEnd - host.length();
+            if (host.length() <= hostLength && href.regionMatches(true, offset, host, 0, host.length()) &&
+                    (offset == hostStart || href.charAt(offset - 1) == '.')) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private static int queryParametersOf(String href, int from) {
+        int query = href.indexOf('?', from);
+        if (query < 0) {
+            return 0;
+        }
+        int parameters = 1;
+        for (int i = query + 1; i < href.length() && href.charAt(i) != '#'; i++) {
+            char c = href.charAt(i);
+            if (c == '&' || c == ';') {
+                parameters++;
+            }
+        }
+        return parameters;
+    }
+    
+    public long getRejectCount(Reason reason) {
+        return rejectCounts.get(reason).sum();
+    }
+    
+    public long getAcceptCount() {
+        return acceptCount.sum();
+    }
+    
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Reason reason : Reason.values()) {
+            builder.append("rejected by ").append(reason.name().toLowerCase()).append(": ")
+                    .append(getRejectCount(reason)).append(' ');
+        }
+        return builder.append("accepted: ").append(getAcceptCount()).toString();
+    }
+}
@@ -0,0 +1,165 @@
+package com.merzadyan.crawler;
+
+import com.merzadyan.stock.StockMatcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Scores the urls discovered by the crawlers so that the ones most likely to yield a sentiment score are fetched
+ * first, i.e. focused crawling. Shared by the crawlers of a crawl as it learns the yield of each host.
+ * <p>
+ * A url is scored from:
+ * <ul>
+ * <li>the density of the mentions of the stocks of interest in the page which links to it,</li>
+ * <li>whether its anchor text mentions a stock of interest,</li>
+ * <li>keywords in its path, e.g. "markets" or "video", and</li>
+ * <li>the share of the visited pages of its host which yielded a sentiment score.</li>
+ * </ul>
+ * The score is mapped to a crawler4j priority; the frontier fetches urls of lower priority values first, ahead of
+ * their depth. Urls are only followed if the referring page or their anchor text mentions a stock of interest, as
+ * the baseline crawler does; the keywords of the path and the yield of the host only rank the urls which are.
+ */
+public class UrlPrioritiser {
+    /**
+     * Returned by {@link #prioritise} for urls which are not worth fetching.
+     */
+    public static final int DROP = -1;
+    /**
+     * Priorities range from the highest, for the best scores, to the lowest; crawler4j's default priority, and thus
+     * that of the seeds, is the highest.
+     */
+    public static final int HIGHEST_PRIORITY = 0;
+    public static final int LOWEST_PRIORITY = 100;
+    
+    private static final double DENSITY_WEIGHT = 0.3;
+    private static final double ANCHOR_WEIGHT = 0.3;
+    private static final double PATH_WEIGHT = 0.15;
+    private static final double HOST_WEIGHT = 0.25;
+    /**
+     * Mentions per thousand characters of text at which the density of the referring page scores fully.
+     */
+    private static final double SATURATED_DENSITY = 2;
+    
+    private static final String[] RELEVANT_KEYWORDS = {
+            "news", "market", "business", "compan", "stock", "share", "ftse", "financ", "econom", "invest", "article",
+            "results", "earnings", "money"
+    };
+    private static final String[] IRRELEVANT_KEYWORDS = {
+            "video", "podcast", "gallery", "login", "signin", "signup", "register", "account", "subscribe", "privacy",
+            "terms", "cookie", "contact", "/help", "/author/", "/tag/", "sport", "weather", "lifestyle", "travel"
+    };
+    
+    private static class HostYield {
+        private final LongAdder visited = new LongAdder();
+        private final LongAdder yielded = new LongAdder();
+    }
+    
+    private final ConcurrentHashMap<String, HostYield> hostYields = new ConcurrentHashMap<>();
+    
+    private final LongAdder prioritisedCount = new LongAdder();
+    private final LongAdder droppedCount = new LongAdder();
+    
+    /**
+     * @param url          url discovered in the referring page.
+     * @param mentions     number of mentions of the stocks of interest in the referring page.
+     * @param textLength   length of the text of the referring page.
+     * @param stockMatcher matcher of the stocks of interest; finds mentions in the anchor text.
+     * @return priority of the url in the range {@link #HIGHEST_PRIORITY}-{@link #LOWEST_PRIORITY}; {@link #DROP} if
+     * neither the referring page nor the anchor text mentions a stock of interest, whatever the path.
+     */
+    public int prioritise(WebURL url, int mentions, int textLength, StockMatcher stockMatcher) {
+        String anchor = url.getAnchor();
+        boolean anchorHit = anchor != null && !anchor.isEmpty() && !stockMatcher.parseText(anchor).isEmpty();
+        if (mentions == 0 && !anchorHit) {
+            droppedCount.increment();
+            return DROP;
+        }
+        int pathRelevance = pathRelevanceOf(url.getPath());
+        
+        double density = mentions * 1000.0 / Math.max(textLength, 1);
+        double score = DENSITY_WEIGHT * Math.min(density / SATURATED_DENSITY, 1) +
+                (anchorHit ? ANCHOR_WEIGHT : 0) +
+                // Relevance of the path is -1, 0 or 1; mapped to 0, 0.5 and 1.
+                PATH_WEIGHT * (pathRelevance + 1) / 2 +
+                HOST_WEIGHT * yieldOf(url.getDomain());
+        prioritisedCount.increment();
+        return priorityOf(score);
+    }
+    
+    /**
+     * @param score score in the range 0-1.
+     */
+    static int priorityOf(double score) {
+        double clamped = Math.max(0, Math.min(score, 1));
+        return HIGHEST_PRIORITY + (int) Math.round((1 - clamped) * (LOWEST_PRIORITY - HIGHEST_PRIORITY));
+    }
+    
+    /**
+     * @return 1 if the path has a relevant keyword, -1 if it has an irrelevant one only and 0 otherwise.
+     */
+    static int pathRelevanceOf(String path) {
+        if (path == null || path.isEmpty()) {
+            return 0;
+        }
+        if (containsAny(path, RELEVANT_KEYWORDS)) {
+            return 1;
+        }
+        return containsAny(path, IRRELEVANT_KEYWORDS) ? -1 : 0;
+    }
+    
+    /**
+     * Case-insensitive, without allocating a lower case copy of the path.
+     */
+    private static boolean containsAny(String path, String[] keywords) {
+        for (String keyword : keywords) {
+            for (int i = 0; i + keyword.length() <= path.length(); i++) {
+                if (path.regionMatches(true, i, keyword, 0, keyword.length())) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Called for each page visited, before it is analysed.
+     */
+    public void pageVisited(String domain) {
+        if (domain != null) {
+            hostYields.computeIfAbsent(domain, key -> new HostYield()).visited.increment();
+        }
+    }
+    
+    /**
+     * Called for each page which yielded a sentiment score.
+     */
+    public void pageYielded(String domain) {
+        if (domain != null) {
+            hostYields.computeIfAbsent(domain, key -> new HostYield()).yielded.increment();
+        }
+    }
+    
+    /**
+     * @return share of the visited pages of the host which yielded a score, smoothed towards 0.5 for hosts with few
+     * visited pages.
+     */
+    public double yieldOf(String domain) {
+        HostYield hostYield = domain == null ? null : hostYields.get(domain);
+        if (hostYield == null) {
+            return 0.5;
+        }
+        double visited = hostYield.visited.sum();
+        double yielded = Math.min(hostYield.yielded.sum(), visited);
+        return (yielded + 1) / (visited + 2);
+    }
+    
+    public long getPrioritisedCount() {
+        return prioritisedCount.sum();
+    }
+    
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+}
@@ -3,21 +3,37 @@ package com.merzadyan.stock;
 import org.apache.log4j.Logger;
 
 import java.time.LocalDate;
+import java.time.Period;
+import java.time.Year;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Splits a range of dates into buckets of whole days, weeks or months, e.g. the weeks of a crawl, and maps a date to
+ * its bucket arithmetically: the number of whole units since the start of the range is worked out from the epoch day
+ * of the date, thus a lookup is O(1) and allocates nothing, however many buckets there are.
+ * <p>
+ * A new bucket starts every step units and spans window units; buckets are consecutive if the window is the step and
+ * rolling, thus overlapping, if the window is wider. Month buckets start on the day of the month of the start date,
+ * or the last day of shorter months. The buckets which would go past the end of the range are cut short at its end.
+ * Immutable thus shared by the crawlers of a crawl.
+ */
 public class DateCategoriser {
     private static final Logger LOGGER = Logger.getLogger(DateCategoriser.class.getName());
     
     private static final LocalDate DEFAULT_START_DATE = LocalDate.parse("2018-03-01");
-    private LocalDate startDate;
-    private List<LocalDate> dates;
     
     public static final String INTERVAL_DELIMITER = "to";
     
+    public enum Granularity {
+        DAY,
+        WEEK,
+        MONTH
+    }
+    
     public class Data {
         public int nthWeek;
         public LocalDate startDate,
@@ -32,65 +48,277 @@ public class DateCategoriser {
         }
     }
     
+    private final LocalDate startDate;
+    private final Granularity granularity;
+    private final int step;
+    private final int window;
+    
+    private final long startEpochDay;
+    /**
+     * Exclusive.
+     */
+    private final long endEpochDay;
+    /**
+     * Month of the start date since year 0, and its day of the month; for month buckets.
+     */
+    private final long startMonth;
+    private final int startDayOfMonth;
+    
+    private final int bucketCount;
+    /**
+     * First date of each bucket, and the date after the last date of each bucket.
+     */
+    private final LocalDate[] bucketStarts;
+    private final LocalDate[] bucketEnds;
+    /**
+     * Starts of the buckets followed by the end of the range.
+     */
+    private final List<LocalDate> dates;
+    
     /**
+     * Weeks from the start date up to the end of the next month.
+     *
      * @param startDate is 2018-03-01 (default date) if param is null.
      */
     public DateCategoriser(LocalDate startDate) {
-        this.startDate = startDate == null ? DEFAULT_START_DATE : startDate;
+        this(startDate == null ? DEFAULT_START_DATE : startDate, defaultEndDateOf(startDate == null ?
+                DEFAULT_START_DATE : startDate), Granularity.WEEK, 1, 1);
+    }
+    
+    /**
+     * Splits the dates from the start date up to and including the end date into consecutive buckets of the given
+     * size, e.g. weeks, so that a single crawl of the whole range is categorised by bucket.
+     *
+     * @param bucketSize whole days, e.g. {@link Period#ofWeeks}, or whole months.
+     */
+    public DateCategoriser(LocalDate startDate, LocalDate endDate, Period bucketSize) {
+        this(startDate, endDate, granularityOf(bucketSize), stepOf(bucketSize), stepOf(bucketSize));
+    }
+    
+    /**
+     * @param startDate   first date of the range.
+     * @param endDate     last date of the range, inclusive.
+     * @param granularity unit of the step and window.
+     * @param step        units between the starts of consecutive buckets.
+     * @param window      units spanned by a bucket; the step for consecutive buckets, wider for rolling windows.
+     */
+    public DateCategoriser(LocalDate startDate, LocalDate endDate, Granularity granularity, int step, int window) {
+        if (endDate.isBefore(startDate) || step <= 0 || window < step) {
+            throw new IllegalArgumentException("Invalid range: " + startDate + " " + INTERVAL_DELIMITER + " " +
+                    endDate + " granularity: " + granularity + " step: " + step + " window: " + window);
+        }
+        this.startDate = startDate;
+        this.granularity = granularity;
+        this.step = step;
+        this.window = window;
+        startEpochDay = startDate.toEpochDay();
+        endEpochDay = endDate.toEpochDay() + 1;
+        startMonth = startDate.getYear() * 12L + startDate.getMonthValue() - 1;
+        startDayOfMonth = startDate.getDayOfMonth();
         
-        // Gets the date of weeks between 2018-03-01 and the next 3 months.
-        // LocalDate start = LocalDate.parse("2018-03-01"),
-        LocalDate endDate = this.startDate.plusMonths(1).with(TemporalAdjusters.lastDayOfMonth());
-        // Skip 7 days (1 week)
-        dates = Stream.iterate(this.startDate, date -> date.plusWeeks(1))
-                .limit(ChronoUnit.WEEKS.between(this.startDate, endDate))
-                .collect(Collectors.toList());
+        // The last date of the range is in the last bucket to start.
+        bucketCount = (int) Math.floorDiv(unitsOf(endEpochDay - 1), step) + 1;
+        bucketStarts = new LocalDate[bucketCount];
+        bucketEnds = new LocalDate[bucketCount];
+        LocalDate end = endDate.plusDays(1);
+        List<LocalDate> dates = new ArrayList<>(bucketCount + 1);
+        for (int bucket = 0; bucket < bucketCount; bucket++) {
+            bucketStarts[bucket] = boundaryOf((long) bucket * step);
+            LocalDate bucketEnd = boundaryOf((long) bucket * step + window);
+            bucketEnds[bucket] = bucketEnd.isAfter(end) ? end : bucketEnd;
+            dates.add(bucketStarts[bucket]);
+        }
+        dates.add(end);
+        this.dates = Collections.unmodifiableList(dates);
+        LOGGER.debug("#DateCategoriser: " + startDate + " " + INTERVAL_DELIMITER + " " + endDate +
+                " granularity: " + granularity + " step: " + step + " window: " + window + " buckets: " + bucketCount);
     }
     
-    public Data nthDetails(LocalDate extractedDate) {
-        int nthWeek = 0;
-        LocalDate startDateOfWeek = null, endDateOfWeek = null;
-        // LocalDate extractedDate = LocalDate.parse("2018-03-03");
-        for (int i = 0; i < dates.size(); i++) {
-            if (i == dates.size() - 1) {
-                break;
-            }
-            
-            LocalDate currentDate = dates.get(i);
-            LocalDate nextDate = dates.get(i + 1);
-            if (extractedDate.isBefore(nextDate) && extractedDate.isAfter(currentDate)) {
-                // nthWeek starts from 1 whereas i starts from 0 thus add 1.
-                nthWeek = i + 1;
-                startDateOfWeek = currentDate;
-                endDateOfWeek = nextDate;
-                break;
-            }
+    private static LocalDate defaultEndDateOf(LocalDate startDate) {
+        // Gets the date of weeks between the start date and the end of the next month.
+        long weeks = ChronoUnit.WEEKS.between(startDate,
+                startDate.plusMonths(1).with(TemporalAdjusters.lastDayOfMonth()));
+        // NOTE: the last of the dates only ends the bucket before it.
+        return startDate.plusWeeks(weeks - 1).minusDays(1);
+    }
+    
+    private static Granularity granularityOf(Period bucketSize) {
+        if (bucketSize.getDays() > 0 && bucketSize.toTotalMonths() == 0) {
+            return bucketSize.getDays() % 7 == 0 ? Granularity.WEEK : Granularity.DAY;
         }
+        if (bucketSize.getDays() == 0 && bucketSize.toTotalMonths() > 0) {
+            return Granularity.MONTH;
+        }
+        throw new IllegalArgumentException("Bucket size is neither whole days nor whole months: " + bucketSize);
+    }
+    
+    private static int stepOf(Period bucketSize) {
+        switch (granularityOf(bucketSize)) {
+            case DAY:
+                return bucketSize.getDays();
+            case WEEK:
+                return bucketSize.getDays() / 7;
+            default:
+                return (int) bucketSize.toTotalMonths();
+        }
+    }
+    
+    /**
+     * @return the date the given number of units after the start date.
+     */
+    private LocalDate boundaryOf(long units) {
+        switch (granularity) {
+            case DAY:
+                return startDate.plusDays(units);
+            case WEEK:
+                return startDate.plusWeeks(units);
+            default:
+                // NOTE: from the start date rather than the previous boundary, so that a bucket which starts on the
+                // 31st starts on the 31st again after a shorter month.
+                return startDate.plusMonths(units);
+        }
+    }
+    
+    /**
+     * @return number of whole units from the start date to the date, i.e. the index of the last boundary on or before
+     * the date; negative before the start date.
+     */
+    private long unitsOf(long epochDay) {
+        long days = epochDay - startEpochDay;
+        switch (granularity) {
+            case DAY:
+                return days;
+            case WEEK:
+                return Math.floorDiv(days, 7);
+            default:
+                return monthsOf(epochDay);
+        }
+    }
+    
+    /**
+     * Converts the epoch day to its year, month and day of the month arithmetically, as per the civil from days
+     * algorithm of H. Hinnant, rather than through a LocalDate.
+     */
+    private long monthsOf(long epochDay) {
+        // Days since 0000-03-01, thus leap days are at the end of the years.
+        long days = epochDay + 719468;
+        long era = Math.floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int dayOfMonth = (int) (dayOfYear - (153 * shiftedMonth + 2) / 5 + 1);
+        int month = (int) (shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9);
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
         
-        return new Data(nthWeek, startDate, startDateOfWeek, endDateOfWeek);
+        long months = year * 12 + month - 1 - startMonth;
+        // The boundary of the month is on the day of the month of the start date, or the last day of shorter months.
+        if (dayOfMonth < Math.min(startDayOfMonth, lengthOfMonth(year, month))) {
+            months--;
+        }
+        return months;
+    }
+    
+    private static int lengthOfMonth(long year, int month) {
+        switch (month) {
+            case 2:
+                return Year.isLeap(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+    
+    /**
+     * @return index of the last bucket to start on or before the date, from 0; -1 if the date is out of the range.
+     */
+    public int bucketOf(long epochDay) {
+        if (epochDay < startEpochDay || epochDay >= endEpochDay) {
+            return -1;
+        }
+        return (int) Math.floorDiv(unitsOf(epochDay), step);
+    }
+    
+    public int bucketOf(LocalDate date) {
+        return bucketOf(date.toEpochDay());
+    }
+    
+    /**
+     * Rolling windows overlap, thus a date is in every bucket from this one to {@link #bucketOf}; consecutive
+     * buckets do not, thus this is the same bucket.
+     *
+     * @return index of the first bucket the date is in, from 0; -1 if the date is out of the range.
+     */
+    public int firstBucketOf(long epochDay) {
+        if (epochDay < startEpochDay || epochDay >= endEpochDay) {
+            return -1;
+        }
+        // The buckets which started within a window before the date.
+        return (int) Math.max(0, Math.floorDiv(unitsOf(epochDay) - window, step) + 1);
+    }
+    
+    public int firstBucketOf(LocalDate date) {
+        return firstBucketOf(date.toEpochDay());
     }
     
     /**
-     * Extracts the intervals between the date elements in date member variable.
+     * @return the last bucket the date is in; nthWeek is 0 if the date is out of the range.
+     */
+    public Data nthDetails(LocalDate extractedDate) {
+        int bucket = bucketOf(extractedDate);
+        if (bucket == -1) {
+            return new Data(0, startDate, null, null);
+        }
+        // nthWeek starts from 1 whereas the buckets start from 0 thus add 1.
+        return new Data(bucket + 1, startDate, bucketStarts[bucket], bucketEnds[bucket]);
+    }
+    
+    /**
+     * Extracts the intervals of the buckets, from the first date of each bucket to the first date after it.
      *
      * @return
      */
     public String[] extractIntervals() {
-        String[] intervals = new String[dates.size() - 1];
-        for (int i = 0; i < dates.size(); i++) {
-            if (i == dates.size() - 1) {
-                break;
-            }
-            
-            intervals[i] = dates.get(i) + " " +  INTERVAL_DELIMITER + " " + dates.get(i + 1);
+        String[] intervals = new String[bucketCount];
+        for (int i = 0; i < bucketCount; i++) {
+            intervals[i] = bucketStarts[i] + " " + INTERVAL_DELIMITER + " " + bucketEnds[i];
         }
         return intervals;
     }
     
+    /**
+     * @return first date of the bucket.
+     */
+    public LocalDate getStartOf(int bucket) {
+        return bucketStarts[bucket];
+    }
+    
+    /**
+     * @return the date after the last date of the bucket.
+     */
+    public LocalDate getEndOf(int bucket) {
+        return bucketEnds[bucket];
+    }
+    
+    public int getBucketCount() {
+        return bucketCount;
+    }
+    
+    public boolean isRolling() {
+        return window > step;
+    }
+    
     public static LocalDate getDefaultStartDate() {
         return DEFAULT_START_DATE;
     }
     
+    /**
+     * @return the starts of the buckets followed by the end of the range, i.e. the boundaries of consecutive buckets.
+     */
     public List<LocalDate> getDates() {
         return dates;
     }
@@ -14,7 +14,18 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * SOIRegistry (Stocks of Interest Registry) contains a list of stocks to watch during crawling process.
@@ -31,17 +42,56 @@ public class SOIRegistry {
      */
     public static final String FTSE_100_FILE_PATH =
             "src/main/resources/dictionary/ftse-100.txt";
+    /**
+     * References the location of the file containing other names by which companies are referred to, e.g. "Shell"
+     * for "Royal Dutch Shell". Each row holds a company name followed by its aliases wherein each field is separated
+     * by a % symbol. Upper case aliases, e.g. "RBS", only match upper case text.
+     */
+    public static final String ALIASES_FILE_PATH =
+            "src/main/resources/dictionary/aliases.txt";
     public static final String SERIALISED_DIR = "src/main/resources/ser";
     /**
      * References the location of the serialised file containing user-defined stocks of interest.
      * The file holds Stock objects.
      */
     public static final String SERIALISED_SOI_FILE_PATH = SERIALISED_DIR + "/SOIBox.ser";
+    /**
+     * Milliseconds to wait after an edit of the stocks of interest before the matcher is rebuilt, so that a burst of
+     * edits results in a single rebuild.
+     */
+    public static final long STOCK_MATCHER_REBUILD_DELAY = 250;
     
     private SOIBox SOIBox;
     
     private TreeSet<Stock> ftse100Set;
     
+    /**
+     * Aliases by lower case company name. Replaced as a whole, never modified.
+     */
+    private volatile Map<String, List<String>> aliases = Collections.emptyMap();
+    
+    /**
+     * Copy-on-write snapshot of the compiled matcher of the stocks of interest; the crawlers read it without locking.
+     * Compiled lazily, on first use, and rebuilt in the background after the stocks of interest change.
+     */
+    private final AtomicReference<StockMatcher> stockMatcher = new AtomicReference<>();
+    private final AtomicBoolean stockMatcherRebuildScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService stockMatcherRebuilder = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "Stock matcher rebuilder");
+                thread.setDaemon(true);
+                return thread;
+            });
+    /**
+     * Version of the stocks of interest; incremented on every edit. Guarded by the lock of the registry.
+     */
+    private long stockMatcherVersion;
+    /**
+     * Ids of the stocks by lower case company name, assigned in sequence on first use and never reassigned, thus
+     * the id of a stock is the same in every matcher. Guarded by the lock of the registry.
+     */
+    private final HashMap<String, Integer> stockIds = new HashMap<>();
+    
     private SOIRegistry() {
         try {
             ftse100Set = extractFtse100();
@@ -49,6 +99,12 @@ public class SOIRegistry {
             e.printStackTrace();
         }
         
+        try {
+            aliases = Collections.unmodifiableMap(extractAliases());
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        
         if (!new File(SERIALISED_DIR).isDirectory()) {
             File intermediateDirs = new File(SERIALISED_DIR);
             intermediateDirs.mkdirs();
@@ -182,6 +238,51 @@ public class SOIRegistry {
         }
     }
     
+    public void createAndPopulateAliasesFile() {
+        File intermediateDirs = new File("src/main/resources/dictionary");
+        // Create intermediate directories that are parent directories to the aliases file.
+        intermediateDirs.mkdirs();
+        
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(ALIASES_FILE_PATH), "utf-8"))) {
+            LOGGER.debug("Creating and populating file: " + ALIASES_FILE_PATH);
+            // Create and populate the file with the common names of FTSE-100 companies.
+            writer.write("Anglo American plc % Anglo American\n" +
+                    "BAE Systems % BAE\n" +
+                    "British American Tobacco % BAT\n" +
+                    "BT Group % British Telecom\n" +
+                    "Carnival Corporation & plc % Carnival\n" +
+                    "Coca-Cola HBC AG % Coca-Cola HBC\n" +
+                    "CRH plc % CRH\n" +
+                    "Ferguson plc % Ferguson\n" +
+                    "Fresnillo plc % Fresnillo\n" +
+                    "GlaxoSmithKline % GSK % Glaxo\n" +
+                    "International Airlines Group % IAG % British Airways\n" +
+                    "ITV plc % ITV\n" +
+                    "Kingfisher plc % Kingfisher\n" +
+                    "Lloyds Banking Group % Lloyds\n" +
+                    "London Stock Exchange Group % London Stock Exchange\n" +
+                    "Marks & Spencer % Marks and Spencer % M&S\n" +
+                    "National Grid plc % National Grid\n" +
+                    "Pearson PLC % Pearson\n" +
+                    "Persimmon plc % Persimmon\n" +
+                    "Prudential plc % Prudential\n" +
+                    "Rio Tinto Group % Rio Tinto\n" +
+                    "Rolls-Royce Holdings % Rolls-Royce\n" +
+                    "The Royal Bank of Scotland Group % Royal Bank of Scotland % RBS\n" +
+                    "Royal Dutch Shell % Shell\n" +
+                    "Sainsbury's % Sainsbury\n" +
+                    "Shire plc % Shire\n" +
+                    "Sky plc % Sky\n" +
+                    "SSE plc % SSE\n" +
+                    "St. James's Place plc % St. James's Place\n" +
+                    "Vodafone Group % Vodafone\n" +
+                    "WPP plc % WPP");
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+    
     public TreeSet<Stock> extractFtse100() throws IOException {
         if (!FileOp.isFile(FTSE_100_FILE_PATH) || FileOp.isEmptyFile(FTSE_100_FILE_PATH)) {
             createAndPopulateFTSE100File();
@@ -212,6 +313,37 @@ public class SOIRegistry {
         return set;
     }
     
+    /**
+     * @return aliases of the companies by their lower case name.
+     */
+    public Map<String, List<String>> extractAliases() throws IOException {
+        if (!FileOp.isFile(ALIASES_FILE_PATH) || FileOp.isEmptyFile(ALIASES_FILE_PATH)) {
+            createAndPopulateAliasesFile();
+        }
+        
+        Map<String, List<String>> map = new TreeMap<>();
+        try (BufferedReader bufferedReader = new BufferedReader(new FileReader(ALIASES_FILE_PATH))) {
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                String[] fields = line.split("%");
+                if (fields.length < 2) {
+                    // continue to next iteration if format is broken.
+                    continue;
+                }
+                String company = fields[0].trim().toLowerCase();
+                List<String> names = map.computeIfAbsent(company, key -> new ArrayList<>());
+                for (int i = 1; i < fields.length; i++) {
+                    // NOTE: case of aliases is kept since upper case aliases are matched case-sensitively.
+                    String alias = fields[i].trim();
+                    if (!alias.isEmpty()) {
+                        names.add(alias);
+                    }
+                }
+            }
+        }
+        return map;
+    }
+    
     /**
      * IMPORTANT NOTE: for each time when stocks are added via the GUI, call this method keep
      * the the registry in sync with the UI. Adds the specified element to this set if it is not already present.
@@ -222,6 +354,8 @@ public class SOIRegistry {
         boolean isAdded = SOIBox.set.add(stock);
         if (isAdded) {
             serialise(SOIBox.set);
+            stockMatcherVersion++;
+            scheduleStockMatcherRebuild();
         }
     }
     
@@ -235,6 +369,8 @@ public class SOIRegistry {
         boolean isRemoved = SOIBox.set.remove(stock);
         if (isRemoved) {
             serialise(SOIBox.set);
+            stockMatcherVersion++;
+            scheduleStockMatcherRebuild();
         }
     }
     
@@ -246,6 +382,86 @@ public class SOIRegistry {
         return ftse100Set;
     }
     
+    /**
+     * Stocks are identified by company name, ignoring case, as in the set of stocks of interest.
+     *
+     * @return dense id of the stock; the same for the lifetime of the registry.
+     */
+    public synchronized int getStockId(Stock stock) {
+        return stockIds.computeIfAbsent(stock.getCompany().trim().toLowerCase(), company -> stockIds.size());
+    }
+    
+    /**
+     * @return aliases of the companies by their lower case name.
+     */
+    public Map<String, List<String>> getAliases() {
+        return aliases;
+    }
+    
+    /**
+     * Replaces the aliases of the companies; the matcher is rebuilt to reflect them.
+     *
+     * @param aliases aliases by company name (ignoring case).
+     */
+    public synchronized void setAliases(Map<String, ? extends List<String>> aliases) {
+        Map<String, List<String>> map = new TreeMap<>();
+        aliases.forEach((company, names) -> map.put(company.trim().toLowerCase(), new ArrayList<>(names)));
+        this.aliases = Collections.unmodifiableMap(map);
+        stockMatcherVersion++;
+        scheduleStockMatcherRebuild();
+    }
+    
+    /**
+     * Lock-free; called by the crawlers for every page.
+     *
+     * @return matcher of the stocks of interest; the same instance is returned until a rebuild publishes a new one,
+     * i.e. edits are reflected after {@link #STOCK_MATCHER_REBUILD_DELAY} and the time it takes to rebuild.
+     */
+    public StockMatcher getStockMatcher() {
+        StockMatcher matcher = stockMatcher.get();
+        return matcher != null ? matcher : rebuildStockMatcher();
+    }
+    
+    /**
+     * Compiles the current stocks of interest and publishes the matcher, unless a newer one has been published in
+     * the meantime. Normally called in the background after an edit; may be called to reflect edits immediately.
+     *
+     * @return the published matcher.
+     */
+    public StockMatcher rebuildStockMatcher() {
+        // Edits made from here on schedule another rebuild.
+        stockMatcherRebuildScheduled.set(false);
+        TreeSet<Stock> stocks;
+        Map<String, List<String>> stockAliases;
+        long version;
+        synchronized (this) {
+            stocks = new TreeSet<>(SOIBox.set);
+            stockAliases = aliases;
+            version = stockMatcherVersion;
+        }
+        
+        // Compiled outside of the lock so that neither edits nor the crawlers wait for it.
+        StockMatcher built = StockMatcher.build(stocks, stockAliases, this::getStockId, version);
+        StockMatcher published = stockMatcher.accumulateAndGet(built, (current, candidate) ->
+                current == null || candidate.getVersion() > current.getVersion() ? candidate : current);
+        if (published == built) {
+            LOGGER.debug("#rebuildStockMatcher: version: " + version + " stocks: " + built.getStocks().size());
+        }
+        return published;
+    }
+    
+    private void scheduleStockMatcherRebuild() {
+        if (stockMatcherRebuildScheduled.compareAndSet(false, true)) {
+            stockMatcherRebuilder.schedule(() -> {
+                try {
+                    rebuildStockMatcher();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }, STOCK_MATCHER_REBUILD_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+    
     private void serialise(TreeSet<Stock> set) {
         serialise(set, SERIALISED_SOI_FILE_PATH);
     }
@@ -0,0 +1,288 @@
+package com.merzadyan.stock;
+
+import org.ahocorasick.trie.Emit;
+import org.ahocorasick.trie.Trie;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToIntFunction;
+
+/**
+ * Immutable matcher of the stocks of interest, compiled once and shared by all the crawlers of a crawl.
+ * <p>
+ * A single Aho-Corasick trie holds every name a stock goes by: its company name, its ticker symbol and its aliases,
+ * e.g. "Royal Dutch Shell", "RDSA" and "Shell". Thus one pass over the text finds every mention of every stock and
+ * each match maps back to the id of the stock it names. Ids are dense ints, assigned by the {@link SOIRegistry} so
+ * that they stay the same across rebuilds, and let the crawlers accumulate results in arrays rather than maps. Only
+ * whole words are matched. Company names and aliases are matched ignoring case, whereas ticker symbols and upper case
+ * aliases (e.g. "RBS") only match upper case text so that they are not confused with ordinary words.
+ * <p>
+ * The {@link SOIRegistry} publishes a new matcher, with a higher version, whenever the stocks of interest change;
+ * a matcher itself never changes.
+ */
+public class StockMatcher {
+    private final long version;
+    private final long signature;
+    private final List<Stock> stocks;
+    /**
+     * Stocks by their id; null for ids which are not in use, e.g. of stocks which have been removed.
+     */
+    private final Stock[] stocksById;
+    private final Trie trie;
+    /**
+     * Ids of the stocks by the lower case names they go by.
+     */
+    private final Map<String, Integer> stockIds;
+    /**
+     * Names which only match text of the same case, by their lower case form.
+     */
+    private final Map<String, String> caseSensitiveNames;
+    
+    private StockMatcher(long version, List<Stock> stocks, Stock[] stocksById, Trie trie,
+                         Map<String, Integer> stockIds, Map<String, String> caseSensitiveNames) {
+        this.version = version;
+        this.signature = signatureOf(stockIds, caseSensitiveNames);
+        this.stocks = stocks;
+        this.stocksById = stocksById;
+        this.trie = trie;
+        this.stockIds = stockIds;
+        this.caseSensitiveNames = caseSensitiveNames;
+    }
+    
+    /**
+     * @see #build(Collection, Map, long)
+     */
+    public static StockMatcher build(Collection<Stock> stocks, long version) {
+        return build(stocks, Collections.emptyMap(), version);
+    }
+    
+    /**
+     * Compiles a matcher of the stocks whose ids are their index in {@link #getStocks()}.
+     *
+     * @see #build(Collection, Map, ToIntFunction, long)
+     */
+    public static StockMatcher build(Collection<Stock> stocks, Map<String, ? extends Collection<String>> aliases,
+                                     long version) {
+        return build(stocks, aliases, null, version);
+    }
+    
+    /**
+     * Compiles a matcher of the stocks; stocks without a company name are left out.
+     *
+     * @param aliases  other names of the stocks by their company name (ignoring case).
+     * @param stockIds assigns the id of each stock; ids must be small non-negative ints, unique per stock. Null to
+     *                 number the stocks in the order they are given.
+     */
+    public static StockMatcher build(Collection<Stock> stocks, Map<String, ? extends Collection<String>> aliases,
+                                     ToIntFunction<Stock> stockIds, long version) {
+        Map<String, Collection<String>> aliasesByCompany = new HashMap<>();
+        aliases.forEach((company, names) -> aliasesByCompany.put(company.trim().toLowerCase(), names));
+        
+        List<Stock> matchedStocks = new ArrayList<>();
+        List<Stock> stocksById = new ArrayList<>();
+        Map<String, Integer> idsByName = new HashMap<>();
+        Map<String, String> caseSensitiveNames = new HashMap<>();
+        List<String> caseInsensitiveNames = new ArrayList<>();
+        for (Stock stock : stocks) {
+            if (stock == null || stock.getCompany() == null || stock.getCompany().trim().isEmpty()) {
+                continue;
+            }
+            int id = stockIds == null ? matchedStocks.size() : stockIds.applyAsInt(stock);
+            if (id < 0) {
+                throw new IllegalArgumentException("Negative id " + id + " of stock: " + stock.getCompany());
+            }
+            matchedStocks.add(stock);
+            while (stocksById.size() <= id) {
+                stocksById.add(null);
+            }
+            stocksById.set(id, stock);
+            
+            // NOTE: case of company names does not matter when processed.
+            addName(stock.getCompany(), id, false, idsByName, caseSensitiveNames, caseInsensitiveNames);
+            if (stock.getSymbol() != null) {
+                // Ticker symbols are upper case; trailing dots are left out, e.g. BA. is written as BA in articles.
+                String symbol = stock.getSymbol().trim().toUpperCase();
+                while (symbol.endsWith(".")) {
+                    symbol = symbol.substring(0, symbol.length() - 1);
+                }
+                addName(symbol, id, true, idsByName, caseSensitiveNames, caseInsensitiveNames);
+            }
+            Collection<String> stockAliases = aliasesByCompany.get(stock.getCompany().trim().toLowerCase());
+            if (stockAliases != null) {
+                for (String alias : stockAliases) {
+                    addName(alias, id, isUpperCase(alias), idsByName, caseSensitiveNames, caseInsensitiveNames);
+                }
+            }
+        }
+        // A name which also matches ignoring case, e.g. a company named after its ticker symbol, does so.
+        for (String name : caseInsensitiveNames) {
+            caseSensitiveNames.remove(name);
+        }
+        
+        // See https://github.com/robert-bor/aho-corasick
+        Trie trie = Trie.builder()
+                // IMPORTANT: ignoreCase() must be called before adding keywords.
+                .ignoreCase()
+                .onlyWholeWords()
+                .addKeywords(idsByName.keySet())
+                .build();
+        return new StockMatcher(version, Collections.unmodifiableList(matchedStocks),
+                stocksById.toArray(new Stock[0]), trie, idsByName, caseSensitiveNames);
+    }
+    
+    private static void addName(String name, int id, boolean caseSensitive, Map<String, Integer> stockIds,
+                                Map<String, String> caseSensitiveNames, List<String> caseInsensitiveNames) {
+        name = name.trim();
+        // Single characters would match far too much.
+        if (name.length() < 2) {
+            return;
+        }
+        String key = name.toLowerCase();
+        // The first stock to go by a name keeps it.
+        stockIds.putIfAbsent(key, id);
+        if (caseSensitive) {
+            caseSensitiveNames.putIfAbsent(key, name);
+        } else {
+            caseInsensitiveNames.add(key);
+        }
+    }
+    
+    /**
+     * Hashes the names in order, along with the names they share a stock with, so that the signature does not depend
+     * on the ids or on the order in which the stocks were given.
+     */
+    private static long signatureOf(Map<String, Integer> stockIds, Map<String, String> caseSensitiveNames) {
+        Map<Integer, List<String>> namesById = new HashMap<>();
+        stockIds.forEach((name, id) -> namesById.computeIfAbsent(id, key -> new ArrayList<>()).add(name));
+        List<String> stockNames = new ArrayList<>();
+        for (List<String> names : namesById.values()) {
+            Collections.sort(names);
+            StringBuilder builder = new StringBuilder();
+            for (String name : names) {
+                // Case-sensitive names are hashed in their case.
+                builder.append(caseSensitiveNames.getOrDefault(name, name)).append('\n');
+            }
+            // Ends the names of the stock.
+            stockNames.add(builder.append('\u0000').toString());
+        }
+        Collections.sort(stockNames);
+        
+        // FNV-1a.
+        long signature = 0xcbf29ce484222325L;
+        for (String names : stockNames) {
+            for (int i = 0; i < names.length(); i++) {
+                signature ^= names.charAt(i);
+                signature *= 0x100000001b3L;
+            }
+        }
+        return signature;
+    }
+    
+    private static boolean isUpperCase(String name) {
+        boolean hasLetter = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isLowerCase(c)) {
+                return false;
+            }
+            hasLetter |= Character.isLetter(c);
+        }
+        return hasLetter;
+    }
+    
+    /**
+     * @return matches of the names of the stocks in the text, found in a single pass.
+     */
+    public Collection<Emit> parseText(String text) {
+        Collection<Emit> emits = trie.parseText(text);
+        if (!caseSensitiveNames.isEmpty()) {
+            for (Iterator<Emit> iterator = emits.iterator(); iterator.hasNext(); ) {
+                Emit emit = iterator.next();
+                String name = caseSensitiveNames.get(emit.getKeyword().toLowerCase());
+                if (name != null && !text.regionMatches(emit.getStart(), name, 0, name.length())) {
+                    iterator.remove();
+                }
+            }
+        }
+        return emits;
+    }
+    
+    /**
+     * @return id of the stock named by the match; -1 if the match was not found by this matcher.
+     */
+    public int stockIdOf(Emit emit) {
+        Integer id = stockIds.get(emit.getKeyword().toLowerCase());
+        return id == null ? -1 : id;
+    }
+    
+    /**
+     * Maps a name, e.g. an organisation entity identified in an article, to the id of the stock it refers to.
+     *
+     * @return id of the stock of the first match in the name; -1 if the name does not mention any of the stocks.
+     */
+    public int stockIdOf(String name) {
+        if (name == null) {
+            return -1;
+        }
+        for (Emit emit : parseText(name)) {
+            int id = stockIdOf(emit);
+            if (id != -1) {
+                return id;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * @return stock which the name refers to; null if the name does not mention any of the stocks.
+     * @see #stockIdOf(String)
+     */
+    public Stock stockOf(String name) {
+        return getStock(stockIdOf(name));
+    }
+    
+    /**
+     * @return stock of the id; null if no stock of the matcher has the id.
+     */
+    public Stock getStock(int id) {
+        return id >= 0 && id < stocksById.length ? stocksById[id] : null;
+    }
+    
+    /**
+     * @return upper bound (exclusive) of the ids of the stocks; sizes arrays indexed by stock id.
+     */
+    public int getStockIdBound() {
+        return stocksById.length;
+    }
+    
+    /**
+     * @return version of the stocks of interest the matcher was compiled from; increases with every change.
+     */
+    public long getVersion() {
+        return version;
+    }
+    
+    /**
+     * @return hash of the names the stocks go by; unlike the version, it is the same for the same stocks of interest
+     * across sessions, thus identifies them in persisted data.
+     */
+    public long getSignature() {
+        return signature;
+    }
+    
+    /**
+     * @return stocks which are matched, in the order they were given.
+     */
+    public List<Stock> getStocks() {
+        return stocks;
+    }
+    
+    public Trie getTrie() {
+        return trie;
+    }
+}
@@ -43,11 +43,16 @@ public class ChartWindow extends Application {
         primaryStage.show();
     }
     
+    /**
+     * Draws the charts of the stock; called again as the results of a crawl come in, thus replaces what was drawn.
+     */
     @FXML
     void initData(@NotNull ArrayList<Stock> list) {
         if (list == null || list.size() == 0) {
             return;
         }
+        lineChart.getData().clear();
+        barChart.getData().clear();
         
         XYChart.Series sentimentValueSeries = new XYChart.Series();
         sentimentValueSeries.setName("Sentiment Value");
@@ -3,6 +3,7 @@ package com.merzadyan.ui;
 import com.merzadyan.FileOp;
 import com.merzadyan.crawler.CrawlerManager;
 import com.merzadyan.crawler.CrawlerTerminationListener;
+import com.merzadyan.crawler.ResultListener;
 import com.merzadyan.seed.SeedUrl;
 import com.merzadyan.seed.SeedUrlRegistry;
 import com.merzadyan.stock.DateCategoriser;
@@ -46,10 +47,14 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.Period;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -65,10 +70,19 @@ public class MainWindow extends Application {
     private CrawlerManager crawlerManager;
     private CountDownLatch countDownLatch;
     private HashMap<String, ArrayList<Stock>> stocksAsTimeProgresses;
-    // finalStockResultList is the result from the last crawl-process which process for one date interval.
-    private ArrayList<Stock> finalStockResultList;
+    // finalStockResultList is the result from the last crawl-process, one entry per stock per week when the whole
+    // range is crawled, otherwise for one date interval.
+    // NOTE: only accessed on the JavaFX thread, as are stocksAsTimeProgresses and openCharts; the results are posted
+    // to it by the crawl.
+    private final ArrayList<Stock> finalStockResultList = new ArrayList<>();
+    // Charts which are shown, and their stocks; they are redrawn as the results of the crawl come in.
+    private final HashMap<ChartWindow, Stock> openCharts = new HashMap<>();
     private static final String IMMEDIATE_DIR = "src/main/resources/ser";
     private static final String SERIALISED_FILE_PATH = IMMEDIATE_DIR + "/history.ser";
+    // Size of the buckets the whole range is split into; each is one of the intervals.
+    private static final Period WHOLE_RANGE_BUCKET_SIZE = Period.ofWeeks(1);
+    // Interval spanning all of the intervals, crawled once and split into weeks; null if there are no intervals.
+    private String wholeRangeInterval;
     
     /**
      * Indicates the current state of the crawlers. True if crawling is currently being performed.
@@ -164,22 +178,9 @@ public class MainWindow extends Application {
     
     private class ResultsCallback implements CrawlerTerminationListener {
         @Override
-        public void onTermination(HashMap<Stock, ArrayList<Integer>> soiScoreMap) {
+        public void onTermination(List<Stock> results) {
+            // NOTE: the results are read from the crawl-wide aggregator once every crawler has terminated.
             countDownLatch.countDown();
-            
-            if (soiScoreMap == null) {
-                return;
-            }
-            
-            try {
-                soiScoreMap.forEach((stock, scores) -> {
-                    synchronized (finalStockResultList) {
-                        finalStockResultList.add(stock);
-                    }
-                });
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
         }
     }
     
@@ -275,8 +276,15 @@ public class MainWindow extends Application {
         
         ResultsCallback resultsCallback = new ResultsCallback();
         crawlerManager = new CrawlerManager(resultsCallback);
+        // Partial results are shown while crawling, rather than only once every crawler has terminated.
+        crawlerManager.addResultListener(new ResultListener() {
+            @Override
+            public void onSnapshot(List<Stock> results, boolean finished) {
+                // Avoid throwing IllegalStateException by updating the table and charts from a non-JavaFX thread.
+                Platform.runLater(() -> showResults(results));
+            }
+        });
         stocksAsTimeProgresses = new HashMap<>();
-        finalStockResultList = new ArrayList<>();
         // Restore last saved state.
         stocksAsTimeProgresses = deserialise();
         if (stocksAsTimeProgresses == null) {
@@ -406,22 +414,11 @@ public class MainWindow extends Application {
                                             
                                             ChartWindow controller = fxmlLoader.getController();
                                             
-                                            // Iterates through finalStockResultList, assumes only one entry
-                                            // for a given company. If the company name matches then retrieve the data.
-                                            for (Stock result : finalStockResultList) {
-                                                if (result.getCompany().trim().toLowerCase().equals(stock.getCompany()
-                                                        .trim().toLowerCase())) {
-                                                    // Sync the data.
-                                                    result.setSymbol(stock.getSymbol());
-                                                    result.setStockExchange(stock.getStockExchange());
-                                                    stock.setLatestSentimentScore(result.getLatestSentimentScore());
-                                                    stock.setHistogram(result.getHistogram());
-                                                    stock.setStartDate(result.getStartDate());
-                                                    stock.setEndDate(result.getEndDate());
-                                                }
-                                            }
-                                            
-                                            controller.initData(stocksAsTimeProgresses.get(stock.getCompany()));
+                                            sync(stock);
+                                            controller.initData(progressOf(stock));
+                                            // The chart is redrawn as the results of the crawl come in, until closed.
+                                            openCharts.put(controller, stock);
+                                            stage.setOnHidden(hiddenEvent -> openCharts.remove(controller));
                                             
                                             stage.show();
                                         } catch (Exception e) {
@@ -497,11 +494,15 @@ public class MainWindow extends Application {
          */
         processIntervalComboBox.getItems().clear();
         
-        String[] intervals = new DateCategoriser(null).extractIntervals();
+        DateCategoriser dateCategoriser = new DateCategoriser(null);
+        String[] intervals = dateCategoriser.extractIntervals();
         if (intervals != null && intervals.length != 0) {
-            processIntervalComboBox.getItems().addAll(
-                    new DateCategoriser(null).extractIntervals()
-            );
+            // The whole range ends the day before the end of the last interval, thus its weeks are the intervals.
+            List<LocalDate> dates = dateCategoriser.getDates();
+            wholeRangeInterval = dates.get(0) + " " + DateCategoriser.INTERVAL_DELIMITER + " " +
+                    dates.get(dates.size() - 1).minusDays(1);
+            processIntervalComboBox.getItems().add(wholeRangeInterval);
+            processIntervalComboBox.getItems().addAll(intervals);
         } else {
             LOGGER.fatal("new DateCategoriser(null).extractIntervals() is null or length is 0.");
         }
@@ -538,82 +539,15 @@ public class MainWindow extends Application {
                     countDownLatch.await();
                     
                     stopTimer();
-                    currentlyCrawling = false;
-                    startBtn.setDisable(false);
-                    
-                    for (int i = 0; i < finalStockResultList.size(); i++) {
-                        int nextIndex = i + 1;
-                        if (nextIndex >= finalStockResultList.size()) {
-                            break;
-                        }
-                        
-                        Stock current = finalStockResultList.get(i),
-                                next = finalStockResultList.get(nextIndex);
-                        if (current.getCompany().trim().toLowerCase().equals(next.getCompany().trim().toLowerCase())) {
-                            int length = current.getHistogram().length;
-                            int[] histogram = new int[length];
-                            
-                            // Sum elements in histograms.
-                            for (int j = 0; j < length; j++) {
-                                histogram[j] = current.getHistogram()[j] + next.getHistogram()[j];
-                            }
-                            
-                            next.setHistogram(histogram);
-                            finalStockResultList.remove(current);
-                        }
-                    }
-                    
-                    // Get the date interval.
-                    Stock dummy = null;
-                    for (Stock stock : finalStockResultList) {
-                        // Only used to collect the date interval for later use.
-                        // To be extra cautious: null checks - should not be the case when these fields are ever null.
-                        if (dummy == null && !FileOp.isNullOrEmpty(stock.getCompany()) &&
-                                stock.getStartDate() != null && stock.getEndDate() != null) {
-                            dummy = stock;
-                            dummy.setCompany(dummy.getCompany().toLowerCase());
-                        }
-                        LOGGER.debug("#non-UI thread: all crawlers are terminated.");
-                        String out = ("Stock: " + stock.getCompany()) +
-                                " Sentiment Score: " + stock.getLatestSentimentScore() +
-                                " Histogram: " + Arrays.toString(stock.getHistogram()) +
-                                " Start Date: " + stock.getStartDate() +
-                                " End Date: " + stock.getEndDate();
-                        LOGGER.debug("result: " + out);
-                    }
-                    
-                    if (dummy != null) {
-                        // CountdownLatch ensures to execute after all the crawler threads have finished.
-                        // finalStockResultList holds a batch of stocks as a result of processing in a specified date interval,
-                        // therefore the date interval for all the stocks should be the same.
-                        try {
-                            // list represents the different intervals for a stock.
-                            ArrayList<Stock> list = stocksAsTimeProgresses.get(dummy.getCompany());
-                            
-                            if (list != null) {
-                                for (Stock stock : list) {
-                                    // Check if there is there a result produced from this interval.
-                                    // If not then add and exit.
-                                    if (!stock.getStartDate().equals(dummy.getStartDate()) &&
-                                            !stock.getStartDate().equals(dummy.getStartDate())) {
-                                        list.add(dummy);
-                                        
-                                        stocksAsTimeProgresses.put(dummy.getCompany(), list);
-                                        // add only once.
-                                        break;
-                                    }
-                                }
-                            } else {
-                                list = new ArrayList<>();
-                                list.add(dummy);
-                                stocksAsTimeProgresses.put(dummy.getCompany(), list);
-                            }
-                            
-                            serialise();
-                        } catch (Exception e) {
-                            e.printStackTrace();
-                        }
-                    }
+                    // The scores of all the crawlers are aggregated per stock, thus there is one result per stock.
+                    List<Stock> results = crawlerManager.getResults();
+                    // Avoid throwing IllegalStateException by running from a non-JavaFX thread.
+                    Platform.runLater(() -> {
+                        currentlyCrawling = false;
+                        startBtn.setDisable(false);
+                        showResults(results);
+                        recordProgress();
+                    });
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
@@ -628,6 +562,97 @@ public class MainWindow extends Application {
         }
     }
     
+    /**
+     * Shows the results of the crawl so far in the SOI registry table and the open charts; on the JavaFX thread.
+     */
+    private void showResults(List<Stock> results) {
+        finalStockResultList.clear();
+        finalStockResultList.addAll(results);
+        for (Stock stock : soiObservableList) {
+            sync(stock);
+        }
+        soiRegistryTableView.refresh();
+        for (ChartWindow chart : openCharts.keySet()) {
+            chart.initData(progressOf(openCharts.get(chart)));
+        }
+    }
+    
+    /**
+     * Iterates through finalStockResultList; if the company name matches then retrieve the data. The results are
+     * ordered by week, thus a stock ends up with the data of its latest week of the crawl.
+     */
+    private void sync(Stock stock) {
+        for (Stock result : finalStockResultList) {
+            if (result.getCompany().trim().toLowerCase().equals(stock.getCompany().trim().toLowerCase())) {
+                // Sync the data.
+                result.setSymbol(stock.getSymbol());
+                result.setStockExchange(stock.getStockExchange());
+                stock.setLatestSentimentScore(result.getLatestSentimentScore());
+                stock.setHistogram(result.getHistogram());
+                stock.setStartDate(result.getStartDate());
+                stock.setEndDate(result.getEndDate());
+            }
+        }
+    }
+    
+    /**
+     * @return the results of the stock for the intervals crawled before and of the current crawl, in order of the
+     * intervals; a result of the current crawl replaces that of the same interval crawled before.
+     */
+    private ArrayList<Stock> progressOf(Stock stock) {
+        String company = stock.getCompany().trim().toLowerCase();
+        ArrayList<Stock> progress = new ArrayList<>();
+        ArrayList<Stock> list = stocksAsTimeProgresses.get(company);
+        if (list != null) {
+            progress.addAll(list);
+        }
+        for (Stock result : finalStockResultList) {
+            if (result.getCompany().trim().toLowerCase().equals(company)) {
+                progress.removeIf(previous -> previous.getStartDate().equals(result.getStartDate()));
+                progress.add(result);
+            }
+        }
+        // A crawl of the whole range adds several weeks at once, thus the intervals are put back in order.
+        progress.sort(Comparator.comparing(Stock::getStartDate));
+        return progress;
+    }
+    
+    /**
+     * Adds the results of the crawl to the results of the stocks over time, one per interval, and saves them; on the
+     * JavaFX thread. A crawl of the whole range yields a result per week, each of which is recorded under its interval.
+     */
+    private void recordProgress() {
+        try {
+            boolean recorded = false;
+            for (Stock stock : finalStockResultList) {
+                // To be extra cautious: null checks - should not be the case when these fields are ever null.
+                if (FileOp.isNullOrEmpty(stock.getCompany()) || stock.getStartDate() == null ||
+                        stock.getEndDate() == null) {
+                    continue;
+                }
+                LOGGER.debug("#recordProgress: result: Stock: " + stock.getCompany() +
+                        " Sentiment Score: " + stock.getLatestSentimentScore() +
+                        " Histogram: " + Arrays.toString(stock.getHistogram()) +
+                        " Start Date: " + stock.getStartDate() +
+                        " End Date: " + stock.getEndDate());
+                
+                // list represents the different intervals for a stock; the result of an interval crawled before
+                // replaces the previous one.
+                String company = stock.getCompany().trim().toLowerCase();
+                ArrayList<Stock> list = stocksAsTimeProgresses.computeIfAbsent(company, key -> new ArrayList<>());
+                list.removeIf(previous -> previous.getStartDate().equals(stock.getStartDate()));
+                list.add(stock);
+                recorded = true;
+            }
+            
+            if (recorded) {
+                serialise();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+    
     public void stopCrawlers() {
         if (!currentlyCrawling) {
             return;
@@ -681,6 +706,9 @@ public class MainWindow extends Application {
     public void saveConfigs() {
         String interval = (String) processIntervalComboBox.getValue();
         crawlerManager.setInterval(interval);
+        // A crawl of the whole range yields the results of every week at once.
+        crawlerManager.setBucketSize(interval != null && interval.equals(wholeRangeInterval) ?
+                WHOLE_RANGE_BUCKET_SIZE : Period.ZERO);
         
         // Guard against null strings.
         String userAgentName = userAgentNameTextField.getText().trim();
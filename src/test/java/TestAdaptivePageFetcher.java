@@ -0,0 +1,36 @@
+import com.merzadyan.crawler.AdaptivePageFetcher;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestAdaptivePageFetcher {
+    private static final String USER_AGENT = "crawler4j (https://github.com/yasserg/crawler4j/)";
+    
+    @Test
+    public void shouldReadCrawlDelayOfAnyCrawler() {
+        String robotsTxt = "User-agent: *\n" +
+                "Disallow: /private/\n" +
+                "Crawl-delay: 1.5 # seconds\n";
+        Assert.assertEquals(1500, AdaptivePageFetcher.crawlDelayOf(robotsTxt, USER_AGENT));
+    }
+    
+    @Test
+    public void shouldPreferCrawlDelayOfOwnGroup() {
+        String robotsTxt = "User-agent: *\r\n" +
+                "Crawl-delay: 10\r\n" +
+                "\r\n" +
+                "User-agent: Googlebot\r\n" +
+                "User-agent: crawler4j\r\n" +
+                "Crawl-delay: 2\r\n";
+        Assert.assertEquals(2000, AdaptivePageFetcher.crawlDelayOf(robotsTxt, USER_AGENT));
+    }
+    
+    @Test
+    public void shouldIgnoreCrawlDelayOfOtherCrawlers() {
+        String robotsTxt = "User-agent: Googlebot\n" +
+                "Crawl-delay: 5\n" +
+                "User-agent: *\n" +
+                "Crawl-delay: soon\n" +
+                "Disallow:\n";
+        Assert.assertEquals(0, AdaptivePageFetcher.crawlDelayOf(robotsTxt, USER_AGENT));
+    }
+}
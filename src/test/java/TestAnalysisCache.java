@@ -0,0 +1,119 @@
+import com.merzadyan.analyser.Analysis;
+import com.merzadyan.analyser.AnalysisCache;
+import com.merzadyan.analyser.SentientAnalyser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+
+public class TestAnalysisCache {
+    private static final LocalDate START_DATE = LocalDate.parse("2018-03-01");
+    private static final LocalDate END_DATE = LocalDate.parse("2018-03-08");
+    
+    private static Path newFile() throws IOException {
+        return Files.createTempDirectory("analysis").resolve("analysis.cache");
+    }
+    
+    @Test
+    public void shouldGetAnalysisPut() throws IOException {
+        try (AnalysisCache cache = new AnalysisCache(newFile(), 64, 0)) {
+            cache.put(1, new Analysis("2018-03-03", "Barclays", 3, null));
+            // Rejected before the organisation or even the date was found.
+            cache.put(2, new Analysis("2018-03-04", null, -1, SentientAnalyser.Stage.ORGANISATION));
+            cache.put(3, new Analysis(null, null, -1, SentientAnalyser.Stage.DATE));
+            
+            Analysis analysis = cache.get(1, START_DATE, END_DATE);
+            Assert.assertEquals("2018-03-03", analysis.getDate());
+            Assert.assertEquals("Barclays", analysis.getOrganisation());
+            Assert.assertEquals(3, analysis.getSentiment());
+            Assert.assertNull(analysis.getRejectedAt());
+            
+            analysis = cache.get(2, START_DATE, END_DATE);
+            Assert.assertEquals("2018-03-04", analysis.getDate());
+            Assert.assertNull(analysis.getOrganisation());
+            Assert.assertEquals(-1, analysis.getSentiment());
+            Assert.assertEquals(SentientAnalyser.Stage.ORGANISATION, analysis.getRejectedAt());
+            
+            analysis = cache.get(3, START_DATE, END_DATE);
+            Assert.assertNull(analysis.getDate());
+            Assert.assertNull(analysis.getOrganisation());
+            Assert.assertEquals(SentientAnalyser.Stage.DATE, analysis.getRejectedAt());
+            
+            Assert.assertNull(cache.get(4, START_DATE, END_DATE));
+            Assert.assertEquals(3, cache.getHitCount());
+            Assert.assertEquals(1, cache.getMissCount());
+        }
+    }
+    
+    @Test
+    public void shouldEvictLeastRecentlyUsedAnalysisOfSet() throws IOException, InterruptedException {
+        // A single set, thus every key is in the same set.
+        try (AnalysisCache cache = new AnalysisCache(newFile(), 1, 0)) {
+            for (long key = 1; key <= 8; key++) {
+                cache.put(key, new Analysis("2018-03-03", "Barclays", (int) key % 5, null));
+                // NOTE: records are ordered by the millisecond they were last used.
+                Thread.sleep(2);
+            }
+            Assert.assertNotNull(cache.get(1, START_DATE, END_DATE));
+            Thread.sleep(2);
+            cache.put(9, new Analysis("2018-03-03", "Barclays", 4, null));
+            
+            Assert.assertNull(cache.get(2, START_DATE, END_DATE));
+            Assert.assertNotNull(cache.get(1, START_DATE, END_DATE));
+            for (long key = 3; key <= 9; key++) {
+                Assert.assertNotNull(cache.get(key, START_DATE, END_DATE));
+            }
+        }
+    }
+    
+    @Test
+    public void shouldExpireAnalysisAfterTimeToLive() throws IOException, InterruptedException {
+        try (AnalysisCache cache = new AnalysisCache(newFile(), 64, 1)) {
+            cache.put(1, new Analysis("2018-03-03", "Barclays", 3, null));
+            Thread.sleep(10);
+            Assert.assertNull(cache.get(1, START_DATE, END_DATE));
+        }
+    }
+    
+    @Test
+    public void shouldStartAfreshAtDifferentCapacity() throws IOException {
+        Path file = newFile();
+        try (AnalysisCache cache = new AnalysisCache(file, 64, 0)) {
+            cache.put(1, new Analysis("2018-03-03", "Barclays", 3, null));
+        }
+        try (AnalysisCache cache = new AnalysisCache(file, 64, 0)) {
+            Assert.assertNotNull(cache.get(1, START_DATE, END_DATE));
+        }
+        try (AnalysisCache cache = new AnalysisCache(file, 128, 0)) {
+            Assert.assertNull(cache.get(1, START_DATE, END_DATE));
+        }
+    }
+    
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectCapacityBeyondMax() throws IOException {
+        // NOTE: the positions of the records of a larger cache would overflow.
+        new AnalysisCache(newFile(), AnalysisCache.MAX_CAPACITY + 1, 0).close();
+    }
+    
+    @Test
+    public void shouldReconsiderDateForInterval() throws IOException {
+        try (AnalysisCache cache = new AnalysisCache(newFile(), 64, 0)) {
+            cache.put(1, new Analysis("2018-03-03", "Barclays", 3, null));
+            // Analysed in-between the dates of an earlier crawl, thus rejected at the date by a later crawl.
+            Analysis analysis = cache.get(1, LocalDate.parse("2018-03-08"), LocalDate.parse("2018-03-15"));
+            Assert.assertEquals(SentientAnalyser.Stage.DATE, analysis.getRejectedAt());
+            Assert.assertEquals("2018-03-03", analysis.getDate());
+            Assert.assertNull(analysis.getOrganisation());
+            Assert.assertEquals(-1, analysis.getSentiment());
+            
+            // Rejected at the date by an earlier crawl, thus has to be analysed by a crawl of its date.
+            cache.put(2, new Analysis("2018-03-10", null, -1, SentientAnalyser.Stage.DATE));
+            Assert.assertNull(cache.get(2, LocalDate.parse("2018-03-08"), LocalDate.parse("2018-03-15")));
+            Assert.assertFalse(cache.contains(2, LocalDate.parse("2018-03-08"), LocalDate.parse("2018-03-15")));
+            Assert.assertEquals(SentientAnalyser.Stage.DATE, cache.get(2, START_DATE, END_DATE).getRejectedAt());
+        }
+    }
+}
@@ -10,7 +10,6 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.time.LocalDate;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.CountDownLatch;
@@ -22,24 +21,8 @@ public class TestAppWithoutUI {
         
         int maxCrawlers = 7;
         
-        final List<Stock> finalStockResultList = new ArrayList<>();
         final CountDownLatch cl = new CountDownLatch(maxCrawlers);
-        CrawlerManager cm = new CrawlerManager((soiScoreMap -> {
-            if (soiScoreMap == null) {
-                return;
-            }
-            cl.countDown();
-            
-            try {
-                soiScoreMap.forEach((stock, scores) -> {
-                    synchronized (finalStockResultList) {
-                        finalStockResultList.add(stock);
-                    }
-                });
-            } catch (Exception e) {
-                l.fatal(e);
-            }
-        }));
+        CrawlerManager cm = new CrawlerManager(results -> cl.countDown());
         
         cm.setInterval("2018-03-08 to 2018-03-15");
         cm.setTest(true);
@@ -59,28 +42,8 @@ public class TestAppWithoutUI {
             try {
                 cl.await();
                 
-                for (int i = 0; i < finalStockResultList.size(); i++) {
-                    int nextIndex = i + 1;
-                    if (nextIndex >= finalStockResultList.size()) {
-                        break;
-                    }
-                    
-                    Stock current = finalStockResultList.get(i),
-                            next = finalStockResultList.get(nextIndex);
-                    if (current.getCompany().trim().toLowerCase().equals(next.getCompany().trim().toLowerCase())) {
-                        int length = current.getHistogram().length;
-                        int[] histogram = new int[length];
-                        
-                        // Sum elements in histograms.
-                        for (int j = 0; j < length; j++) {
-                            histogram[j] = current.getHistogram()[j] + next.getHistogram()[j];
-                        }
-                        
-                        next.setHistogram(histogram);
-                        finalStockResultList.remove(current);
-                    }
-                }
-                
+                // Results of all the crawlers, aggregated per stock.
+                List<Stock> finalStockResultList = cm.getResults();
                 for (Stock stock : finalStockResultList) {
                     String out = ("Stock: " + stock.getCompany()) +
                             " Symbol: " + stock.getSymbol() +
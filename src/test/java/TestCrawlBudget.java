@@ -0,0 +1,78 @@
+import com.merzadyan.crawler.CrawlBudget;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class TestCrawlBudget {
+    
+    @Test
+    public void shouldGrantPagesUpToTheLimit() {
+        CrawlBudget budget = new CrawlBudget(2, 0, 0);
+        Assert.assertTrue(budget.tryVisit(100));
+        Assert.assertFalse(budget.isExhausted());
+        // The last page within the budget exhausts it.
+        Assert.assertTrue(budget.tryVisit(100));
+        Assert.assertTrue(budget.isExhausted());
+        Assert.assertFalse(budget.tryVisit(100));
+        Assert.assertEquals(2, budget.getPages());
+        Assert.assertEquals(200, budget.getBytes());
+    }
+    
+    @Test
+    public void shouldBeExhaustedByBytes() {
+        CrawlBudget budget = new CrawlBudget(0, 0, 1000);
+        Assert.assertTrue(budget.tryVisit(600));
+        Assert.assertFalse(budget.isExhausted());
+        // The page which goes over the limit has been fetched already thus is granted.
+        Assert.assertTrue(budget.tryVisit(600));
+        Assert.assertTrue(budget.isExhausted());
+        Assert.assertFalse(budget.tryVisit(1));
+    }
+    
+    @Test
+    public void shouldGrantAnalysesUpToTheLimit() {
+        CrawlBudget budget = new CrawlBudget(0, 1, 0);
+        Assert.assertTrue(budget.tryAnalyse());
+        Assert.assertTrue(budget.isExhausted());
+        Assert.assertFalse(budget.tryAnalyse());
+        Assert.assertEquals(1, budget.getAnalysedPages());
+    }
+    
+    @Test
+    public void shouldBeUnlimitedByDefault() {
+        CrawlBudget budget = new CrawlBudget(0, 0, 0);
+        for (int i = 0; i < 1000; i++) {
+            Assert.assertTrue(budget.tryVisit(1024));
+            Assert.assertTrue(budget.tryAnalyse());
+        }
+        Assert.assertFalse(budget.isExhausted());
+    }
+    
+    @Test
+    public void shouldHoldAcrossThreads() throws InterruptedException {
+        final int limit = 1000;
+        CrawlBudget budget = new CrawlBudget(limit, 0, 0);
+        AtomicInteger granted = new AtomicInteger();
+        List<Thread> crawlers = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < limit; i++) {
+                    if (budget.tryVisit(1)) {
+                        granted.incrementAndGet();
+                    }
+                }
+            });
+            crawlers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : crawlers) {
+            thread.join();
+        }
+        Assert.assertEquals(limit, granted.get());
+        Assert.assertEquals(limit, budget.getPages());
+        Assert.assertTrue(budget.isExhausted());
+    }
+}
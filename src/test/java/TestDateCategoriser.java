@@ -3,6 +3,7 @@ import org.junit.Assert;
 import org.junit.Test;
 
 import java.time.LocalDate;
+import java.time.Period;
 import java.util.List;
 
 
@@ -55,4 +56,75 @@ public class TestDateCategoriser {
         Assert.assertEquals(startOfWeek, data.startDateOfWeek);
         Assert.assertEquals(endOfWeek, data.endDateOfWeek);
     }
+    
+    @Test
+    public void shouldIncludeDatesOnBoundaries() {
+        DateCategoriser.Data data = DATE_CATEGORISER.nthDetails(LocalDate.parse("2018-03-08"));
+        Assert.assertEquals(2, data.nthWeek);
+        Assert.assertEquals(LocalDate.parse("2018-03-08"), data.startDateOfWeek);
+    }
+    
+    @Test
+    public void shouldBucketRange() {
+        DateCategoriser categoriser = new DateCategoriser(LocalDate.parse("2018-01-01"),
+                LocalDate.parse("2018-12-31"), Period.ofWeeks(1));
+        Assert.assertEquals(53, categoriser.getBucketCount());
+        Assert.assertEquals(1, categoriser.nthDetails(LocalDate.parse("2018-01-01")).nthWeek);
+        Assert.assertEquals(2, categoriser.nthDetails(LocalDate.parse("2018-01-08")).nthWeek);
+        // The last bucket is cut short at the end date.
+        DateCategoriser.Data data = categoriser.nthDetails(LocalDate.parse("2018-12-31"));
+        Assert.assertEquals(53, data.nthWeek);
+        Assert.assertEquals(LocalDate.parse("2018-12-31"), data.startDateOfWeek);
+        Assert.assertEquals(LocalDate.parse("2019-01-01"), data.endDateOfWeek);
+        Assert.assertEquals(0, categoriser.nthDetails(LocalDate.parse("2019-01-01")).nthWeek);
+    }
+    
+    @Test
+    public void shouldBucketMonthsFromDayOfStartDate() {
+        DateCategoriser categoriser = new DateCategoriser(LocalDate.parse("2018-01-31"),
+                LocalDate.parse("2018-12-31"), DateCategoriser.Granularity.MONTH, 1, 1);
+        Assert.assertEquals(12, categoriser.getBucketCount());
+        Assert.assertEquals(0, categoriser.bucketOf(LocalDate.parse("2018-02-27")));
+        // February is shorter thus its bucket starts on its last day; March starts on the 31st again.
+        Assert.assertEquals(1, categoriser.bucketOf(LocalDate.parse("2018-02-28")));
+        Assert.assertEquals(1, categoriser.bucketOf(LocalDate.parse("2018-03-30")));
+        Assert.assertEquals(2, categoriser.bucketOf(LocalDate.parse("2018-03-31")));
+        Assert.assertEquals(LocalDate.parse("2018-03-31"), categoriser.getStartOf(2));
+        Assert.assertEquals(-1, categoriser.bucketOf(LocalDate.parse("2018-01-30")));
+        Assert.assertEquals(-1, categoriser.bucketOf(LocalDate.parse("2019-01-01")));
+    }
+    
+    @Test
+    public void shouldBucketRollingWindows() {
+        // Four week windows, a new one every week.
+        DateCategoriser categoriser = new DateCategoriser(LocalDate.parse("2018-01-01"),
+                LocalDate.parse("2018-03-31"), DateCategoriser.Granularity.WEEK, 1, 4);
+        Assert.assertTrue(categoriser.isRolling());
+        Assert.assertEquals(0, categoriser.firstBucketOf(LocalDate.parse("2018-01-10")));
+        Assert.assertEquals(1, categoriser.bucketOf(LocalDate.parse("2018-01-10")));
+        Assert.assertEquals(2, categoriser.firstBucketOf(LocalDate.parse("2018-02-05")));
+        Assert.assertEquals(5, categoriser.bucketOf(LocalDate.parse("2018-02-05")));
+        Assert.assertEquals(LocalDate.parse("2018-01-29"), categoriser.getEndOf(0));
+        // The last windows are cut short at the end of the range.
+        Assert.assertEquals(LocalDate.parse("2018-04-01"), categoriser.getEndOf(categoriser.getBucketCount() - 1));
+    }
+    
+    @Test
+    public void shouldMatchBoundariesOfEveryDate() {
+        LocalDate start = LocalDate.parse("1999-11-30"), end = LocalDate.parse("2004-03-02");
+        for (DateCategoriser.Granularity granularity : DateCategoriser.Granularity.values()) {
+            for (int step = 1; step <= 3; step++) {
+                DateCategoriser categoriser = new DateCategoriser(start, end, granularity, step, step + 1);
+                for (LocalDate date = start; !date.isAfter(end); date = date.plusDays(1)) {
+                    int bucket = categoriser.bucketOf(date.toEpochDay());
+                    Assert.assertFalse(date.isBefore(categoriser.getStartOf(bucket)));
+                    Assert.assertTrue(bucket == categoriser.getBucketCount() - 1 ||
+                            date.isBefore(categoriser.getStartOf(bucket + 1)));
+                    int firstBucket = categoriser.firstBucketOf(date.toEpochDay());
+                    Assert.assertTrue(date.isBefore(categoriser.getEndOf(firstBucket)));
+                    Assert.assertTrue(firstBucket == 0 || !date.isBefore(categoriser.getEndOf(firstBucket - 1)));
+                }
+            }
+        }
+    }
 }
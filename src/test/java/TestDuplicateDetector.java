@@ -0,0 +1,85 @@
+import com.merzadyan.crawler.DuplicateDetector;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestDuplicateDetector {
+    private static final String STORY = "Shares in Tesco rose sharply on Tuesday after the supermarket reported a " +
+            "stronger than expected rise in like-for-like sales over the Christmas period, with chief executive " +
+            "Dave Lewis saying the turnaround plan was ahead of schedule and that the group expected full year " +
+            "profits to be at the top end of analyst forecasts despite intense competition from the discounters " +
+            "Aldi and Lidl, which continued to win market share across the country during the quarter. The " +
+            "retailer said sales in its UK stores grew by more than two per cent in the six weeks to the fifth of " +
+            "January, its best Christmas trading performance for seven years, helped by strong demand for its " +
+            "premium ranges and online grocery deliveries. Analysts at several brokers raised their price targets " +
+            "following the update, although some warned that rising food costs and a weaker pound could squeeze " +
+            "margins later in the year as suppliers push for higher prices.";
+    
+    private static final String OTHER_STORY = "Barclays has agreed to pay a fine to the Financial Conduct " +
+            "Authority after the regulator found that the bank had failed to properly assess the risks of a series " +
+            "of transactions for ultra high net worth clients, the watchdog said in a statement on Thursday, adding " +
+            "that the bank had cooperated fully with its investigation.";
+    
+    @Test
+    public void shouldDetectSyndicatedCopies() {
+        DuplicateDetector detector = new DuplicateDetector();
+        long original = DuplicateDetector.fingerprintOf("Reuters - " + STORY);
+        Assert.assertFalse(detector.isDuplicate(original));
+        Assert.assertTrue(detector.record(original));
+        // The same story with different boilerplate and casing.
+        long copy = DuplicateDetector.fingerprintOf("Markets | " + STORY.toUpperCase() + " Related articles");
+        Assert.assertTrue(detector.isDuplicate(copy));
+        Assert.assertEquals(1, detector.getDuplicateCount());
+        Assert.assertEquals(1, detector.getFingerprintCount());
+    }
+    
+    @Test
+    public void shouldNotDetectCopiesOfRejectedArticles() {
+        DuplicateDetector detector = new DuplicateDetector();
+        // The first copy is checked but its analysis is not accepted, thus it is not recorded.
+        Assert.assertFalse(detector.isDuplicate(DuplicateDetector.fingerprintOf("Reuters - " + STORY)));
+        Assert.assertFalse(detector.isDuplicate(DuplicateDetector.fingerprintOf("Markets | " + STORY)));
+        Assert.assertEquals(0, detector.getFingerprintCount());
+    }
+    
+    @Test
+    public void shouldNotScoreCopiesAnalysedAtOnce() {
+        DuplicateDetector detector = new DuplicateDetector();
+        long original = DuplicateDetector.fingerprintOf("Reuters - " + STORY),
+                copy = DuplicateDetector.fingerprintOf("Markets | " + STORY);
+        Assert.assertFalse(detector.isDuplicate(original));
+        Assert.assertFalse(detector.isDuplicate(copy));
+        Assert.assertTrue(detector.record(original));
+        Assert.assertFalse(detector.record(copy));
+        Assert.assertEquals(1, detector.getDuplicateCount());
+        Assert.assertEquals(1, detector.getUniqueCount());
+    }
+    
+    @Test
+    public void shouldNotDetectDifferentArticles() {
+        DuplicateDetector detector = new DuplicateDetector();
+        long story = DuplicateDetector.fingerprintOf(STORY), otherStory = DuplicateDetector.fingerprintOf(OTHER_STORY);
+        Assert.assertFalse(detector.isDuplicate(story));
+        Assert.assertTrue(detector.record(story));
+        Assert.assertFalse(detector.isDuplicate(otherStory));
+        Assert.assertTrue(detector.record(otherStory));
+        Assert.assertEquals(0, detector.getDuplicateCount());
+        Assert.assertEquals(2, detector.getFingerprintCount());
+    }
+    
+    @Test
+    public void shouldNotRecordBeyondCapacity() {
+        DuplicateDetector detector = new DuplicateDetector(1);
+        Assert.assertTrue(detector.record(DuplicateDetector.fingerprintOf(STORY)));
+        Assert.assertTrue(detector.record(DuplicateDetector.fingerprintOf(OTHER_STORY)));
+        Assert.assertEquals(1, detector.getFingerprintCount());
+        Assert.assertFalse(detector.isDuplicate(DuplicateDetector.fingerprintOf(OTHER_STORY)));
+    }
+    
+    @Test
+    public void shouldNotFingerprintShortTexts() {
+        Assert.assertEquals(0, DuplicateDetector.fingerprintOf("Tesco shares rise"));
+        DuplicateDetector detector = new DuplicateDetector();
+        Assert.assertTrue(detector.record(0));
+        Assert.assertFalse(detector.isDuplicate(0));
+    }
+}
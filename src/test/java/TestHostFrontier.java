@@ -0,0 +1,88 @@
+import com.merzadyan.crawler.AdaptivePageFetcher;
+import com.merzadyan.crawler.HostFrontier;
+import com.sleepycat.je.Environment;
+import com.sleepycat.je.EnvironmentConfig;
+import edu.uci.ics.crawler4j.crawler.CrawlConfig;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestHostFrontier {
+    private Environment env;
+    private AdaptivePageFetcher pageFetcher;
+    private HostFrontier frontier;
+    
+    private static WebURL url(String href, int docid) {
+        WebURL url = new WebURL();
+        url.setURL(href);
+        url.setDocid(docid);
+        return url;
+    }
+    
+    @Before
+    public void beforeTest() throws IOException {
+        EnvironmentConfig envConfig = new EnvironmentConfig();
+        envConfig.setAllowCreate(true);
+        envConfig.setTransactional(false);
+        envConfig.setLocking(false);
+        env = new Environment(Files.createTempDirectory("frontier").toFile(), envConfig);
+        CrawlConfig config = new CrawlConfig();
+        config.setPolitenessDelay(0);
+        pageFetcher = new AdaptivePageFetcher(config, 200);
+        frontier = new HostFrontier(env, config, pageFetcher);
+    }
+    
+    @After
+    public void afterTest() {
+        frontier.close();
+        pageFetcher.shutDown();
+        env.close();
+    }
+    
+    @Test
+    public void shouldInterleaveHosts() {
+        frontier.schedule(url("http://www.a.com/1", 1));
+        frontier.schedule(url("http://www.a.com/2", 2));
+        frontier.schedule(url("http://www.a.com/3", 3));
+        frontier.schedule(url("http://www.b.com/1", 4));
+        
+        List<WebURL> urls = new ArrayList<>();
+        frontier.getNextURLs(50, urls);
+        Assert.assertEquals(1, urls.size());
+        Assert.assertEquals("http://www.a.com/1", urls.get(0).getURL());
+        // The url of host a is being fetched, thus the url of host b is handed out ahead of the other urls of a.
+        urls.clear();
+        frontier.getNextURLs(50, urls);
+        Assert.assertEquals(1, urls.size());
+        Assert.assertEquals("http://www.b.com/1", urls.get(0).getURL());
+        Assert.assertEquals(2, frontier.getQueueLength());
+    }
+    
+    @Test
+    public void shouldNotHandOutUrlOfClaimedHost() {
+        frontier.schedule(url("http://www.a.com/1", 1));
+        Assert.assertTrue(pageFetcher.claim("www.a.com", System.nanoTime()));
+        Assert.assertFalse(pageFetcher.claim("www.a.com", System.nanoTime()));
+        
+        // Finishing the crawl wakes up the crawler waiting for host a.
+        new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException e) {
+                e.printStackTrace();
+            }
+            frontier.finish();
+        }).start();
+        List<WebURL> urls = new ArrayList<>();
+        frontier.getNextURLs(50, urls);
+        Assert.assertTrue(urls.isEmpty());
+        Assert.assertEquals(1, frontier.getQueueLength());
+    }
+}
@@ -0,0 +1,71 @@
+import com.merzadyan.crawler.HtmlTextExtractor;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TestHtmlTextExtractor {
+    private final HtmlTextExtractor extractor = new HtmlTextExtractor();
+    
+    @Test
+    public void shouldExtractBodyText() {
+        String html = "<!DOCTYPE html><html><head><title>Title</title></head>" +
+                "<body><h1>Barclays profit</h1><p>Shares <b>rose</b> 4 percent.</p></body></html>";
+        Assert.assertEquals("Barclays profit Shares rose 4 percent.", extractor.extract(html));
+    }
+    
+    @Test
+    public void shouldSkipScriptStyleAndNavigation() {
+        String html = "<body><nav><a href=\"/\">Home</a><ul><li>Markets</li></ul></nav>" +
+                "<script>if (a < b && c > d) { document.write('</p>'); }</script>" +
+                "<style>p { color: red; }</style>" +
+                "<noscript>Enable JavaScript</noscript>" +
+                "<p>Tesco sales rose.</p><!-- <p>Hidden</p> --></body>";
+        Assert.assertEquals("Tesco sales rose.", extractor.extract(html));
+    }
+    
+    @Test
+    public void shouldCollapseWhitespace() {
+        String html = "<p>\n   Vodafone \t warns\n</p>\n\n<p>on   Spain</p>";
+        Assert.assertEquals("Vodafone warns on Spain", extractor.extract(html));
+    }
+    
+    @Test
+    public void shouldNotSeparateInlineElements() {
+        String html = "<p>Glaxo<span>Smith</span>Kline and <a href=\"/hsbc\">HSBC</a>.</p>";
+        Assert.assertEquals("GlaxoSmithKline and HSBC.", extractor.extract(html));
+    }
+    
+    @Test
+    public void shouldDecodeCharacterReferences() {
+        String html = "<p>Marks &amp; Spencer fell&nbsp;5&#37; to &#163;2 &#x2014; &quot;disappointing&quot; &foo; A&B</p>";
+        Assert.assertEquals("Marks & Spencer fell 5% to \u00a32 \u2014 \"disappointing\" &foo; A&B",
+                extractor.extract(html));
+    }
+    
+    @Test
+    public void shouldIgnoreGreaterThanInQuotedAttributes() {
+        String html = "<p title=\"a > b\" data-x='>'>BAE Systems</p>";
+        Assert.assertEquals("BAE Systems", extractor.extract(html));
+    }
+    
+    @Test
+    public void shouldKeepLessThanWhichDoesNotStartATag() {
+        Assert.assertEquals("profit < 5 and loss <3", extractor.extract("<p>profit < 5 and loss <3</p>"));
+    }
+    
+    @Test
+    public void shouldBeLenientTowardsMalformedMarkup() {
+        Assert.assertEquals("", extractor.extract(null));
+        Assert.assertEquals("", extractor.extract(""));
+        Assert.assertEquals("Text", extractor.extract("<head><title>Unclosed head<body>Text"));
+        Assert.assertEquals("Before", extractor.extract("Before<p unterminated"));
+        Assert.assertEquals("Before", extractor.extract("Before<!-- unterminated comment"));
+        Assert.assertEquals("Before", extractor.extract("Before<script>unterminated script"));
+    }
+    
+    @Test
+    public void shouldReuseExtractorAcrossPages() {
+        Assert.assertEquals("First page", extractor.extract("<p>First page</p><nav>Unclosed menu"));
+        // Skipped elements left open on the previous page do not affect the next page.
+        Assert.assertEquals("Second page", extractor.extract("<p>Second page</p>"));
+    }
+}
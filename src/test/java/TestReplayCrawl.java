@@ -0,0 +1,73 @@
+import com.merzadyan.crawler.CrawlMetrics;
+import com.merzadyan.crawler.CrawlerManager;
+import com.merzadyan.crawler.ResultListener;
+import com.merzadyan.stock.Stock;
+import org.apache.log4j.Logger;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the recorded corpus through the crawlers and analysers offline and reports the end-to-end throughput.
+ * <p>
+ * Arguments (all optional): number of crawlers, latency of the replay server in milliseconds and its bandwidth in
+ * bytes per second (0 for unlimited) e.g. 8 100 262144.
+ */
+public class TestReplayCrawl {
+    private static final Logger l = Logger.getLogger(TestReplayCrawl.class.getName());
+    
+    public static void main(String[] args) throws InterruptedException {
+        int crawlers = args.length > 0 ? Integer.parseInt(args[0]) : CrawlerManager.DEFAULT.DEFAULT_NUMBER_OF_CRAWLERS;
+        int latency = args.length > 1 ? Integer.parseInt(args[1]) : CrawlerManager.DEFAULT.DEFAULT_REPLAY_LATENCY;
+        int bandwidth = args.length > 2 ? Integer.parseInt(args[2]) : CrawlerManager.DEFAULT.DEFAULT_REPLAY_BANDWIDTH;
+        
+        // Each crawler publishes its results once.
+        final CountDownLatch cl = new CountDownLatch(crawlers);
+        CrawlerManager cm = new CrawlerManager(results -> cl.countDown());
+        
+        // The corpus articles are dated March 2018.
+        cm.setInterval("2018-03-01 to 2018-03-31");
+        cm.setTest(true);
+        cm.setTestMode(CrawlerManager.MODE.TEST_MODE_REPLAY);
+        cm.setNumberOfCrawlers(crawlers);
+        cm.setReplayLatency(latency);
+        cm.setReplayBandwidth(bandwidth);
+        // Politeness is not required towards the replay server.
+        cm.setPolitenessDelay(0);
+        cm.setResumableCrawling(false);
+        cm.setCrawlStorageFolder("target/crawler4j-replay");
+        // Results are streamed during the crawl.
+        cm.addResultListener(new ResultListener() {
+            @Override
+            public void onResult(Stock stock, LocalDate date, int score, String url) {
+                l.info("result: " + stock.getCompany() + " date: " + date + " score: " + score + " url: " + url);
+            }
+            
+            @Override
+            public void onSnapshot(List<Stock> results, boolean finished) {
+                for (Stock stock : results) {
+                    l.info((finished ? "final" : "partial") + " snapshot: " + stock.getCompany() +
+                            " histogram: " + Arrays.toString(stock.getHistogram()));
+                }
+            }
+        });
+        
+        cm.startNonBlockingCrawl();
+        cl.await();
+        cm.stopCrawl();
+        
+        CrawlMetrics metrics = cm.getCrawlMetrics();
+        l.info("crawlers: " + crawlers + " latency (ms): " + latency + " bandwidth (bytes/s): " + bandwidth);
+        l.info("pages visited: " + metrics.getPagesVisited() +
+                " pages/s: " + String.format("%.2f", metrics.getPagesPerSecond()));
+        l.info("articles analysed: " + metrics.getArticlesAnalysed() +
+                " analyses/s: " + String.format("%.2f", metrics.getAnalysesPerSecond()));
+        l.info("crawl budget: " + cm.getCrawlBudget());
+        l.info("time to first result (ms): " + metrics.getTimeToFirstResult(TimeUnit.MILLISECONDS) +
+                " time to last result (ms): " + metrics.getTimeToLastResult(TimeUnit.MILLISECONDS) +
+                " time to publish (ms): " + metrics.getTimeToPublish(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,102 @@
+import com.merzadyan.crawler.ReplayServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class TestReplayServer {
+    private static final String INDEX = "<html><body><a href=\"/markets/article.html\">Article</a></body></html>";
+    private static final String ARTICLE = "<html><body><p>Barclays shares rose.</p></body></html>";
+    
+    private Path corpusDir;
+    private ReplayServer replayServer;
+    
+    @Before
+    public void beforeTest() throws IOException {
+        corpusDir = Files.createTempDirectory("corpus");
+        Files.createDirectories(corpusDir.resolve("markets"));
+        Files.write(corpusDir.resolve("index.html"), INDEX.getBytes(StandardCharsets.UTF_8));
+        Files.write(corpusDir.resolve("markets/article.html"), ARTICLE.getBytes(StandardCharsets.UTF_8));
+        
+        replayServer = new ReplayServer(corpusDir.toString());
+        replayServer.start();
+    }
+    
+    @After
+    public void afterTest() throws IOException {
+        replayServer.stop();
+        Files.delete(corpusDir.resolve("markets/article.html"));
+        Files.delete(corpusDir.resolve("markets"));
+        Files.delete(corpusDir.resolve("index.html"));
+        Files.delete(corpusDir);
+    }
+    
+    @Test
+    public void shouldServeSeedPage() throws IOException {
+        HttpURLConnection connection = open(replayServer.getSeedUrl());
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertTrue(connection.getContentType().startsWith("text/html"));
+        Assert.assertEquals(INDEX, read(connection));
+    }
+    
+    @Test
+    public void shouldServePageAtItsPathInTheCorpus() throws IOException {
+        HttpURLConnection connection = open(replayServer.getBaseUrl() + "/markets/article.html");
+        Assert.assertEquals(200, connection.getResponseCode());
+        Assert.assertEquals(ARTICLE, read(connection));
+        Assert.assertEquals(1, replayServer.getRequestCount());
+        Assert.assertEquals(ARTICLE.length(), replayServer.getBytesServed());
+    }
+    
+    @Test
+    public void shouldNotFindPageMissingFromTheCorpus() throws IOException {
+        HttpURLConnection connection = open(replayServer.getBaseUrl() + "/markets/missing.html");
+        Assert.assertEquals(404, connection.getResponseCode());
+        Assert.assertEquals(1, replayServer.getNotFoundCount());
+    }
+    
+    @Test
+    public void shouldDelayResponseByLatency() throws IOException {
+        replayServer.setLatency(200);
+        long start = System.nanoTime();
+        HttpURLConnection connection = open(replayServer.getSeedUrl());
+        Assert.assertEquals(200, connection.getResponseCode());
+        read(connection);
+        Assert.assertTrue(System.nanoTime() - start >= 200_000_000L);
+    }
+    
+    @Test
+    public void shouldLimitResponseToBandwidth() throws IOException {
+        // The seed page is written in no less than half a second at twice its length per second.
+        replayServer.setBandwidth(INDEX.length() * 2);
+        long start = System.nanoTime();
+        HttpURLConnection connection = open(replayServer.getSeedUrl());
+        Assert.assertEquals(INDEX, read(connection));
+        Assert.assertTrue(System.nanoTime() - start >= 400_000_000L);
+    }
+    
+    private static HttpURLConnection open(String url) throws IOException {
+        return (HttpURLConnection) new URL(url).openConnection();
+    }
+    
+    private static String read(HttpURLConnection connection) throws IOException {
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+import com.merzadyan.crawler.ResultAggregator;
+import com.merzadyan.stock.DateCategoriser;
+import com.merzadyan.stock.Stock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.time.Period;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class TestResultAggregator {
+    private static final LocalDate START_DATE = LocalDate.of(2018, 3, 1);
+    private static final LocalDate END_DATE = LocalDate.of(2018, 3, 31);
+    
+    @Test
+    public void shouldAggregateScoresPerStock() {
+        ResultAggregator aggregator = new ResultAggregator();
+        Stock tesco = new Stock("tesco", "tsco", "LSE");
+        Stock barclays = new Stock("barclays", "barc", "LSE");
+        aggregator.record(3, tesco, 1);
+        aggregator.record(3, tesco, 1);
+        aggregator.record(3, tesco, 4);
+        aggregator.record(0, barclays, 2);
+        // Scores outside of 0-4 are ignored.
+        aggregator.record(0, barclays, -1);
+        aggregator.record(0, barclays, 5);
+        
+        List<Stock> results = aggregator.snapshot(START_DATE, END_DATE);
+        Assert.assertEquals(2, results.size());
+        Assert.assertEquals(2, aggregator.getStockCount());
+        
+        Stock first = results.get(0), second = results.get(1);
+        Assert.assertEquals("barclays", first.getCompany());
+        Assert.assertArrayEquals(new int[]{0, 0, 1, 0, 0}, first.getHistogram());
+        Assert.assertEquals(2, first.getLatestSentimentScore());
+        Assert.assertEquals("tesco", second.getCompany());
+        Assert.assertEquals("tsco", second.getSymbol());
+        Assert.assertArrayEquals(new int[]{0, 2, 0, 0, 1}, second.getHistogram());
+        Assert.assertEquals(1, second.getLatestSentimentScore());
+        Assert.assertEquals(START_DATE, second.getStartDate());
+        Assert.assertEquals(END_DATE, second.getEndDate());
+        // The stocks of interest themselves are left as they are.
+        Assert.assertNotSame(tesco, second);
+        Assert.assertEquals(-1, tesco.getLatestSentimentScore());
+    }
+    
+    @Test
+    public void shouldAggregateScoresRecordedConcurrently() throws InterruptedException {
+        final int threads = 8, stocks = 20, scoresPerThread = 10000;
+        ResultAggregator aggregator = new ResultAggregator();
+        Stock[] stocksById = new Stock[stocks];
+        for (int i = 0; i < stocks; i++) {
+            stocksById[i] = new Stock("company " + i, null, "LSE");
+        }
+        
+        List<Thread> recorders = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < scoresPerThread; i++) {
+                    int stockId = i % stocks;
+                    aggregator.record(stockId, stocksById[stockId], i % ResultAggregator.HISTOGRAM_SIZE);
+                }
+            });
+            recorders.add(thread);
+            thread.start();
+        }
+        for (Thread thread : recorders) {
+            thread.join();
+        }
+        
+        List<Stock> results = aggregator.snapshot(START_DATE, END_DATE);
+        Assert.assertEquals(stocks, results.size());
+        long total = 0;
+        for (Stock stock : results) {
+            total += Arrays.stream(stock.getHistogram()).sum();
+        }
+        Assert.assertEquals((long) threads * scoresPerThread, total);
+    }
+    
+    @Test
+    public void shouldAggregateScoresPerBucket() {
+        // Weeks of March 2018; the last is cut short at the end date.
+        ResultAggregator aggregator = new ResultAggregator(new DateCategoriser(START_DATE, END_DATE,
+                Period.ofWeeks(1)));
+        Assert.assertEquals(5, aggregator.getBucketCount());
+        Stock tesco = new Stock("tesco", "tsco", "LSE");
+        Stock barclays = new Stock("barclays", "barc", "LSE");
+        aggregator.record(1, tesco, 0, 3);
+        aggregator.record(1, tesco, 0, 3);
+        aggregator.record(0, barclays, 4, 1);
+        // Buckets out of range are ignored.
+        aggregator.record(0, barclays, 5, 1);
+        
+        List<Stock> results = aggregator.snapshot(START_DATE, END_DATE);
+        Assert.assertEquals(2, results.size());
+        Stock first = results.get(0), second = results.get(1);
+        Assert.assertEquals("tesco", first.getCompany());
+        Assert.assertArrayEquals(new int[]{0, 0, 0, 2, 0}, first.getHistogram());
+        Assert.assertEquals(LocalDate.of(2018, 3, 1), first.getStartDate());
+        Assert.assertEquals(LocalDate.of(2018, 3, 7), first.getEndDate());
+        Assert.assertEquals("barclays", second.getCompany());
+        Assert.assertArrayEquals(new int[]{0, 1, 0, 0, 0}, second.getHistogram());
+        Assert.assertEquals(LocalDate.of(2018, 3, 29), second.getStartDate());
+        Assert.assertEquals(END_DATE, second.getEndDate());
+    }
+}
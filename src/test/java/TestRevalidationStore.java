@@ -0,0 +1,73 @@
+import com.merzadyan.crawler.RevalidationStore;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class TestRevalidationStore {
+    @Test
+    public void shouldSaveAndLoadValidators() throws IOException {
+        Path file = Files.createTempDirectory("revalidation").resolve("revalidation.store");
+        RevalidationStore store = new RevalidationStore(file, 16);
+        store.put("http://www.bbc.co.uk/news/business-1", "\"abc\"", null, 1L, 2L);
+        store.put("http://www.bbc.co.uk/news/business-2", null, "Tue, 01 Jan 2019 00:00:00 GMT", 3L, 4L);
+        store.save();
+        
+        RevalidationStore loaded = new RevalidationStore(file, 16);
+        Assert.assertEquals(2, loaded.size());
+        RevalidationStore.Entry entry = loaded.get("http://www.bbc.co.uk/news/business-1");
+        Assert.assertEquals("\"abc\"", entry.getEtag());
+        Assert.assertNull(entry.getLastModified());
+        Assert.assertEquals(1L, entry.getAnalysisKey());
+        Assert.assertEquals(2L, entry.getSignature());
+        entry = loaded.get("http://www.bbc.co.uk/news/business-2");
+        Assert.assertNull(entry.getEtag());
+        Assert.assertEquals("Tue, 01 Jan 2019 00:00:00 GMT", entry.getLastModified());
+    }
+    
+    @Test
+    public void shouldEvictLeastRecentlyUsedUrl() {
+        RevalidationStore store = new RevalidationStore(null, 2);
+        store.put("http://a.com/1", "\"1\"", null, 1L, 0L);
+        store.put("http://a.com/2", "\"2\"", null, 2L, 0L);
+        store.get("http://a.com/1");
+        store.put("http://a.com/3", "\"3\"", null, 3L, 0L);
+        Assert.assertEquals(2, store.size());
+        Assert.assertNotNull(store.get("http://a.com/1"));
+        Assert.assertNull(store.get("http://a.com/2"));
+    }
+    
+    @Test
+    public void shouldRemoveUrlWithoutValidators() {
+        RevalidationStore store = new RevalidationStore(null, 2);
+        store.put("http://a.com/1", "\"1\"", null, 1L, 0L);
+        store.put("http://a.com/1", null, null, 1L, 0L);
+        Assert.assertNull(store.get("http://a.com/1"));
+    }
+    
+    @Test
+    public void shouldSaveConcurrently() throws IOException, InterruptedException {
+        Path file = Files.createTempDirectory("revalidation").resolve("revalidation.store");
+        RevalidationStore store = new RevalidationStore(file, 1024);
+        for (int i = 0; i < 1000; i++) {
+            store.put("http://www.bbc.co.uk/news/business-" + i, "\"" + i + "\"", null, i, 0L);
+        }
+        List<Thread> savers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(store::save);
+            savers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : savers) {
+            thread.join();
+        }
+        
+        RevalidationStore loaded = new RevalidationStore(file, 1024);
+        Assert.assertEquals(1000, loaded.size());
+        Assert.assertEquals(999L, loaded.get("http://www.bbc.co.uk/news/business-999").getAnalysisKey());
+    }
+}
@@ -1,5 +1,7 @@
 import com.merzadyan.FileOp;
 import com.merzadyan.stock.SOIRegistry;
+import com.merzadyan.stock.Stock;
+import com.merzadyan.stock.StockMatcher;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -34,4 +36,53 @@ public class TestSOIRegistry {
         // if the file is non-existent or empty on object construction.
         Assert.assertFalse(ftse100Set.isEmpty());
     }
+    
+    @Test
+    public void stockMatcherShouldBeReusedUntilStocksOfInterestChange() {
+        SOIRegistry registry = SOIRegistry.getInstance();
+        StockMatcher matcher = registry.getStockMatcher();
+        Assert.assertNotNull(matcher);
+        Assert.assertSame(matcher, registry.getStockMatcher());
+        // Rebuilding without an edit does not replace the published matcher.
+        Assert.assertSame(matcher, registry.rebuildStockMatcher());
+    }
+    
+    @Test
+    public void stockMatcherShouldBeRebuiltAfterEdit() {
+        SOIRegistry registry = SOIRegistry.getInstance();
+        Stock stock = new Stock("TestSOIRegistry Holdings", "TSTR", "LSE");
+        StockMatcher before = registry.getStockMatcher();
+        
+        registry.add(stock);
+        try {
+            StockMatcher after = registry.rebuildStockMatcher();
+            Assert.assertTrue(after.getVersion() > before.getVersion());
+            Assert.assertTrue(after.getStocks().contains(stock));
+            Assert.assertNotNull(after.getTrie().firstMatch("Shares in TestSOIRegistry Holdings rose."));
+        } finally {
+            // Restore the stocks of interest.
+            registry.remove(stock);
+        }
+        Assert.assertFalse(registry.rebuildStockMatcher().getStocks().contains(stock));
+    }
+    
+    @Test
+    public void stockIdsShouldBeStableAcrossRebuilds() {
+        SOIRegistry registry = SOIRegistry.getInstance();
+        Stock stock = new Stock("TestSOIRegistry Holdings", "TSTR", "LSE");
+        int id = registry.getStockId(stock);
+        Assert.assertEquals(id, registry.getStockId(new Stock("testsoiregistry holdings", null, null)));
+        
+        registry.add(stock);
+        try {
+            StockMatcher matcher = registry.rebuildStockMatcher();
+            Assert.assertEquals(id, matcher.stockIdOf("TestSOIRegistry Holdings"));
+            Assert.assertSame(stock, matcher.getStock(id));
+        } finally {
+            // Restore the stocks of interest.
+            registry.remove(stock);
+        }
+        Assert.assertNull(registry.rebuildStockMatcher().getStock(id));
+        Assert.assertEquals(id, registry.getStockId(stock));
+    }
 }
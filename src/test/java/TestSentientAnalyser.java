@@ -1,11 +1,19 @@
+import com.merzadyan.analyser.Analysis;
 import com.merzadyan.analyser.SentientAnalyser;
 import com.merzadyan.stock.Stock;
+import com.merzadyan.stock.StockMatcher;
+import org.ahocorasick.trie.Emit;
 import org.ahocorasick.trie.Trie;
 import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.TreeSet;
 
 public class TestSentientAnalyser {
@@ -97,4 +105,100 @@ public class TestSentientAnalyser {
         
         Assert.assertEquals("2018-03-03", date);
     }
+    
+    @Test
+    public void shouldAnalyseDateOrganisationAndSentimentInOnePass() {
+        String text = "March 3, 2018\n" +
+                "\n" +
+                "Amid the consumer privacy revelations, Barclays is receiving more and more pressure " +
+                "to explain themselves.";
+        
+        Analysis analysis = null;
+        try {
+            analysis = SentientAnalyser.analyse(text, trie);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        
+        Assert.assertNotNull(analysis);
+        Assert.assertEquals("2018-03-03", analysis.getDate());
+        Assert.assertEquals("Barclays", analysis.getOrganisation());
+        Assert.assertTrue(analysis.getSentiment() >= 0 && analysis.getSentiment() <= 4);
+        Assert.assertNull(analysis.getRejectedAt());
+    }
+    
+    @Test
+    public void shouldStopAnalysingWhenDateIsNotInBetween() {
+        String text = "March 3, 2018\n" +
+                "\n" +
+                "Amid the consumer privacy revelations, Barclays is receiving more and more pressure " +
+                "to explain themselves.";
+        
+        Analysis analysis = null;
+        try {
+            analysis = SentientAnalyser.analyse(text, trie, LocalDate.parse("2018-03-08"),
+                    LocalDate.parse("2018-03-15"));
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        
+        Assert.assertNotNull(analysis);
+        Assert.assertEquals("2018-03-03", analysis.getDate());
+        Assert.assertNull(analysis.getOrganisation());
+        Assert.assertEquals(-1, analysis.getSentiment());
+        Assert.assertEquals(SentientAnalyser.Stage.DATE, analysis.getRejectedAt());
+    }
+    
+    @Test
+    public void shouldRejectAtMatchStageWhenNoStockIsMentioned() {
+        String text = "March 3, 2018\n" +
+                "\n" +
+                "Markets were flat on Monday as investors awaited the central bank decision.";
+        
+        long rejectCount = SentientAnalyser.getRejectCount(SentientAnalyser.Stage.MATCH);
+        Analysis analysis = null;
+        try {
+            analysis = SentientAnalyser.analyse(text, trie);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        
+        Assert.assertNotNull(analysis);
+        Assert.assertEquals(SentientAnalyser.Stage.MATCH, analysis.getRejectedAt());
+        // The date is never scanned for as the trie match is the first stage.
+        Assert.assertNull(analysis.getDate());
+        Assert.assertEquals(rejectCount + 1, SentientAnalyser.getRejectCount(SentientAnalyser.Stage.MATCH));
+    }
+    
+    /**
+     * Test that the sentences scored for sentiment are those which mention the stock of the organisation, by any
+     * of its names, and not those of other stocks.
+     */
+    @Test
+    public void shouldScopeMentionsToStockOfOrganisation() {
+        Stock rbs = new Stock("The Royal Bank of Scotland Group", "RBS", "LSE");
+        Stock barclays = new Stock("Barclays", "BARC", "LSE");
+        StockMatcher matcher = StockMatcher.build(Arrays.asList(rbs, barclays), Collections.singletonMap(
+                "the royal bank of scotland group", Arrays.asList("Royal Bank of Scotland", "RBS")), 1);
+        String text = "Royal Bank of Scotland cut jobs. RBS shares fell. Barclays and BARC were flat.";
+        Collection<Emit> emits = matcher.parseText(text);
+        Assert.assertEquals(4, emits.size());
+        
+        List<Integer> starts = new ArrayList<>();
+        for (Emit emit : SentientAnalyser.mentionsOf("Royal Bank of Scotland", emits, matcher)) {
+            starts.add(emit.getStart());
+        }
+        Collections.sort(starts);
+        Assert.assertEquals(Arrays.asList(0, text.indexOf("RBS")), starts);
+        
+        starts.clear();
+        for (Emit emit : SentientAnalyser.mentionsOf("Barclays PLC", emits, matcher)) {
+            starts.add(emit.getStart());
+        }
+        Collections.sort(starts);
+        Assert.assertEquals(Arrays.asList(text.indexOf("Barclays"), text.indexOf("BARC ")), starts);
+        
+        // None of the matches refer to the organisation, thus all of them are scored.
+        Assert.assertEquals(4, SentientAnalyser.mentionsOf("Lloyds Banking Group", emits, matcher).size());
+    }
 }
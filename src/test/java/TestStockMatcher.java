@@ -0,0 +1,123 @@
+import com.merzadyan.stock.Stock;
+import com.merzadyan.stock.StockMatcher;
+import org.ahocorasick.trie.Emit;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+public class TestStockMatcher {
+    
+    @Test
+    public void shouldMatchCompanyNamesIgnoringCase() {
+        StockMatcher matcher = StockMatcher.build(Arrays.asList(
+                new Stock("Barclays", "BARC", "LSE"),
+                new Stock("BAE Systems", "BA.", "LSE")), 1);
+        Collection<Emit> emits = matcher.parseText("Shares in barclays and BAE Systems rose.");
+        List<String> keywords = new ArrayList<>();
+        for (Emit emit : emits) {
+            keywords.add(emit.getKeyword());
+        }
+        Assert.assertEquals(2, emits.size());
+        Assert.assertTrue(keywords.contains("barclays"));
+        Assert.assertTrue(keywords.contains("bae systems"));
+    }
+    
+    @Test
+    public void shouldLeaveOutStocksWithoutCompanyName() {
+        Stock stock = new Stock("Tesco", "TSCO", "LSE");
+        StockMatcher matcher = StockMatcher.build(Arrays.asList(stock, new Stock(null, "XXX", "LSE"),
+                new Stock("", "YYY", "LSE"), null), 7);
+        Assert.assertEquals(7, matcher.getVersion());
+        Assert.assertEquals(1, matcher.getStocks().size());
+        Assert.assertSame(stock, matcher.getStocks().get(0));
+    }
+    
+    @Test(expected = UnsupportedOperationException.class)
+    public void stocksShouldBeImmutable() {
+        StockMatcher matcher = StockMatcher.build(Arrays.asList(new Stock("Tesco", "TSCO", "LSE")), 1);
+        matcher.getStocks().clear();
+    }
+    
+    @Test
+    public void shouldMatchTickerSymbolsOnlyInUpperCase() {
+        Stock stock = new Stock("vodafone group", "vod", "LSE");
+        StockMatcher matcher = StockMatcher.build(Collections.singletonList(stock), 1);
+        Assert.assertEquals(1, matcher.parseText("Shares in VOD fell.").size());
+        Assert.assertTrue(matcher.parseText("Drinks such as vod and Vod.").isEmpty());
+        Assert.assertSame(stock, matcher.stockOf("VOD"));
+    }
+    
+    @Test
+    public void shouldStripTrailingDotsOfTickerSymbols() {
+        Stock stock = new Stock("BAE Systems", "BA.", "LSE");
+        StockMatcher matcher = StockMatcher.build(Collections.singletonList(stock), 1);
+        Assert.assertSame(stock, matcher.stockOf("BA"));
+    }
+    
+    @Test
+    public void shouldMapAliasesToTheirStock() {
+        Stock rbs = new Stock("The Royal Bank of Scotland Group", "RBS", "LSE");
+        Stock shell = new Stock("Royal Dutch Shell", "RDSA", "LSE");
+        Map<String, List<String>> aliases = new HashMap<>();
+        aliases.put("the royal bank of scotland group", Arrays.asList("Royal Bank of Scotland", "RBS"));
+        aliases.put("ROYAL DUTCH SHELL", Collections.singletonList("Shell"));
+        StockMatcher matcher = StockMatcher.build(Arrays.asList(rbs, shell), aliases, 1);
+        
+        Collection<Emit> emits = matcher.parseText("Royal Bank of Scotland and shell gained; RBS rose.");
+        Assert.assertEquals(3, emits.size());
+        for (Emit emit : emits) {
+            int id = matcher.stockIdOf(emit);
+            Assert.assertTrue(id != -1);
+            Assert.assertSame(emit.getKeyword().startsWith("shell") ? shell : rbs, matcher.getStock(id));
+        }
+        Assert.assertSame(shell, matcher.stockOf("Shell"));
+        Assert.assertSame(rbs, matcher.stockOf("RBS"));
+        Assert.assertNull(matcher.stockOf("rbs"));
+    }
+    
+    @Test
+    public void shouldOnlyMatchWholeWords() {
+        StockMatcher matcher = StockMatcher.build(Collections.singletonList(new Stock("Tesco", "TSCO", "LSE")), 1);
+        Assert.assertTrue(matcher.parseText("Tescos and TSCOs were not mentioned.").isEmpty());
+        Assert.assertEquals(1, matcher.parseText("Tesco's profits rose.").size());
+        Assert.assertNull(matcher.stockOf("Sainsbury's"));
+    }
+    
+    @Test
+    public void shouldUseAssignedStockIds() {
+        Stock tesco = new Stock("Tesco", "TSCO", "LSE");
+        Stock barclays = new Stock("Barclays", "BARC", "LSE");
+        StockMatcher matcher = StockMatcher.build(Arrays.asList(tesco, barclays), Collections.emptyMap(),
+                stock -> stock == tesco ? 3 : 0, 1);
+        Assert.assertEquals(4, matcher.getStockIdBound());
+        Assert.assertEquals(3, matcher.stockIdOf("TSCO"));
+        Assert.assertEquals(0, matcher.stockIdOf("Barclays Bank"));
+        Assert.assertEquals(-1, matcher.stockIdOf("Sainsbury's"));
+        Assert.assertSame(tesco, matcher.getStock(3));
+        Assert.assertNull(matcher.getStock(1));
+        Assert.assertNull(matcher.getStock(-1));
+    }
+    
+    @Test
+    public void signatureShouldOnlyDependOnNames() {
+        Stock tesco = new Stock("Tesco", "TSCO", "LSE");
+        Stock barclays = new Stock("Barclays", "BARC", "LSE");
+        long signature = StockMatcher.build(Arrays.asList(tesco, barclays), 1).getSignature();
+        // Neither the order, the ids nor the version of the stocks matter.
+        Assert.assertEquals(signature, StockMatcher.build(Arrays.asList(barclays, tesco), Collections.emptyMap(),
+                stock -> stock == tesco ? 5 : 2, 9).getSignature());
+        
+        Map<String, List<String>> aliases = new HashMap<>();
+        aliases.put("Tesco", Collections.singletonList("Tesco Bank"));
+        Assert.assertNotEquals(signature, StockMatcher.build(Arrays.asList(tesco, barclays), aliases, 1)
+                .getSignature());
+        Assert.assertNotEquals(signature, StockMatcher.build(Collections.singletonList(tesco), 1).getSignature());
+    }
+}
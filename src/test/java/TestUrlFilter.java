@@ -0,0 +1,52 @@
+import com.merzadyan.crawler.UrlFilter;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+public class TestUrlFilter {
+    
+    private static WebURL webUrlOf(String href) {
+        WebURL url = new WebURL();
+        url.setURL(href);
+        return url;
+    }
+    
+    @Test
+    public void shouldRejectUrlsOfNonTextResources() {
+        UrlFilter filter = new UrlFilter();
+        Assert.assertEquals(UrlFilter.Reason.EXTENSION, filter.reject(webUrlOf("http://www.bbc.co.uk/logo.PNG")));
+        Assert.assertEquals(UrlFilter.Reason.EXTENSION,
+                filter.reject(webUrlOf("https://www.ft.com/static/app.js?v=3")));
+        Assert.assertNull(filter.reject(webUrlOf("http://www.bbc.co.uk/news/business-123")));
+        Assert.assertNull(filter.reject(webUrlOf("http://www.bbc.co.uk/news.html")));
+        // A dot in the host or an earlier segment is not an extension.
+        Assert.assertNull(filter.reject(webUrlOf("http://www.bbc.co.uk/news.js/markets")));
+        Assert.assertEquals(2, filter.getRejectCount(UrlFilter.Reason.EXTENSION));
+        Assert.assertEquals(3, filter.getAcceptCount());
+    }
+    
+    @Test
+    public void shouldRejectHostsWhichAreNotAllowedOrAreDenied() {
+        UrlFilter filter = new UrlFilter(UrlFilter.DEFAULT_EXCLUDED_EXTENSIONS, Arrays.asList("bbc.co.uk", "FT.com"),
+                Collections.singletonList("sport.bbc.co.uk"), 0, 0);
+        Assert.assertNull(filter.reject(webUrlOf("http://www.bbc.co.uk/news")));
+        Assert.assertNull(filter.reject(webUrlOf("https://ft.com:443/markets")));
+        Assert.assertEquals(UrlFilter.Reason.HOST, filter.reject(webUrlOf("http://sport.bbc.co.uk/football")));
+        // Only whole labels of the host match.
+        Assert.assertEquals(UrlFilter.Reason.HOST, filter.reject(webUrlOf("http://www.notbbc.co.uk/news")));
+        Assert.assertEquals(UrlFilter.Reason.HOST, filter.reject(webUrlOf("http://www.example.com/bbc.co.uk")));
+    }
+    
+    @Test
+    public void shouldRejectLongUrlsAndUrlsWithManyQueryParameters() {
+        UrlFilter filter = new UrlFilter(UrlFilter.DEFAULT_EXCLUDED_EXTENSIONS, Collections.emptyList(),
+                Collections.emptyList(), 40, 2);
+        Assert.assertEquals(UrlFilter.Reason.LENGTH,
+                filter.reject(webUrlOf("http://www.bbc.co.uk/news/business/markets/2018")));
+        Assert.assertNull(filter.reject(webUrlOf("http://www.bbc.co.uk/news?a=1&b=2")));
+        Assert.assertEquals(UrlFilter.Reason.QUERY, filter.reject(webUrlOf("http://www.bbc.co.uk/n?a=1&b=2;c=3")));
+    }
+}
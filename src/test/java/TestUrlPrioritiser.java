@@ -0,0 +1,69 @@
+import com.merzadyan.crawler.UrlPrioritiser;
+import com.merzadyan.stock.Stock;
+import com.merzadyan.stock.StockMatcher;
+import edu.uci.ics.crawler4j.url.WebURL;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class TestUrlPrioritiser {
+    private static final StockMatcher STOCK_MATCHER =
+            StockMatcher.build(Collections.singletonList(new Stock("Tesco", "TSCO", "LSE")), 1);
+    
+    private static WebURL url(String href, String anchor) {
+        WebURL url = new WebURL();
+        url.setURL(href);
+        url.setAnchor(anchor);
+        return url;
+    }
+    
+    @Test
+    public void shouldDropUrlsWithoutReferenceToStocks() {
+        UrlPrioritiser prioritiser = new UrlPrioritiser();
+        Assert.assertEquals(UrlPrioritiser.DROP,
+                prioritiser.prioritise(url("http://example.com/weather/today", "Weather"), 0, 5000, STOCK_MATCHER));
+        // A relevant path alone does not make up for a referring page without mentions.
+        Assert.assertEquals(UrlPrioritiser.DROP,
+                prioritiser.prioritise(url("http://example.com/markets/123", "Read more"), 0, 5000, STOCK_MATCHER));
+        Assert.assertEquals(2, prioritiser.getDroppedCount());
+    }
+    
+    @Test
+    public void shouldFollowUrlsWhoseAnchorIsRelevant() {
+        UrlPrioritiser prioritiser = new UrlPrioritiser();
+        Assert.assertNotEquals(UrlPrioritiser.DROP,
+                prioritiser.prioritise(url("http://example.com/a/123", "Tesco profits rise"), 0, 5000, STOCK_MATCHER));
+    }
+    
+    @Test
+    public void shouldFetchRelevantUrlsFirst() {
+        UrlPrioritiser prioritiser = new UrlPrioritiser();
+        int relevant = prioritiser.prioritise(url("http://example.com/markets/tesco", "Tesco shares rally"), 10, 5000,
+                STOCK_MATCHER);
+        int irrelevant = prioritiser.prioritise(url("http://example.com/video/clip", "Watch"), 1, 5000,
+                STOCK_MATCHER);
+        Assert.assertTrue(relevant >= UrlPrioritiser.HIGHEST_PRIORITY && relevant <= UrlPrioritiser.LOWEST_PRIORITY);
+        Assert.assertTrue(irrelevant >= UrlPrioritiser.HIGHEST_PRIORITY &&
+                irrelevant <= UrlPrioritiser.LOWEST_PRIORITY);
+        // Lower priority values are fetched first.
+        Assert.assertTrue(relevant < irrelevant);
+    }
+    
+    @Test
+    public void shouldLearnYieldOfHosts() {
+        UrlPrioritiser prioritiser = new UrlPrioritiser();
+        Assert.assertEquals(0.5, prioritiser.yieldOf("example.com"), 0);
+        for (int i = 0; i < 8; i++) {
+            prioritiser.pageVisited("example.com");
+            prioritiser.pageVisited("example.org");
+            prioritiser.pageYielded("example.com");
+        }
+        Assert.assertTrue(prioritiser.yieldOf("example.com") > 0.5);
+        Assert.assertTrue(prioritiser.yieldOf("example.org") < 0.5);
+        
+        WebURL fruitful = url("http://example.com/123", null), fruitless = url("http://example.org/123", null);
+        Assert.assertTrue(prioritiser.prioritise(fruitful, 1, 5000, STOCK_MATCHER) <
+                prioritiser.prioritise(fruitless, 1, 5000, STOCK_MATCHER));
+    }
+}